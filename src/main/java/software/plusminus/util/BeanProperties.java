@@ -0,0 +1,247 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.plusminus.util;
+
+import org.springframework.lang.Nullable;
+import org.springframework.util.ReflectionUtils;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bean properties of a class, introspected once and cached.
+ * Properties are addressed by index; getters and setters are compiled to method handles.
+ *
+ * @author Taras Shpek
+ */
+public final class BeanProperties {
+
+    private static final Map<Class<?>, BeanProperties> PROPERTIES = new ConcurrentHashMap<>();
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private final Class<?> type;
+    private final String[] names;
+    private final Class<?>[] types;
+    private final MethodHandle[] getters;
+    private final MethodHandle[] primitiveGetters;
+    private final MethodHandle[] setters;
+    private final Map<String, Integer> indexes;
+    private final int readableCount;
+    private final Map<Class<?>, int[]> targetIndexes = new ConcurrentHashMap<>();
+
+    private BeanProperties(Class<?> type) {
+        this.type = type;
+        PropertyDescriptor[] descriptors;
+        try {
+            descriptors = Introspector.getBeanInfo(type).getPropertyDescriptors();
+        } catch (IntrospectionException e) {
+            throw new IllegalStateException(e);
+        }
+        names = new String[descriptors.length];
+        types = new Class<?>[descriptors.length];
+        getters = new MethodHandle[descriptors.length];
+        primitiveGetters = new MethodHandle[descriptors.length];
+        setters = new MethodHandle[descriptors.length];
+        indexes = new HashMap<>();
+        for (int i = 0; i < descriptors.length; i++) {
+            PropertyDescriptor descriptor = descriptors[i];
+            names[i] = descriptor.getName();
+            types[i] = descriptor.getPropertyType();
+            getters[i] = compile(descriptor.getReadMethod(),
+                    MethodType.methodType(Object.class, Object.class));
+            if (types[i] != null && types[i].isPrimitive()) {
+                primitiveGetters[i] = compile(descriptor.getReadMethod(),
+                        MethodType.methodType(primitiveKind(types[i]), Object.class));
+            }
+            setters[i] = compile(descriptor.getWriteMethod(),
+                    MethodType.methodType(void.class, Object.class, Object.class));
+            indexes.put(names[i], i);
+        }
+        int readable = 0;
+        for (MethodHandle getter : getters) {
+            if (getter != null) {
+                readable++;
+            }
+        }
+        readableCount = readable;
+    }
+
+    public static BeanProperties of(Class<?> type) {
+        return PROPERTIES.computeIfAbsent(type, BeanProperties::new);
+    }
+
+    public Class<?> getType() {
+        return type;
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    public int readableCount() {
+        return readableCount;
+    }
+
+    /**
+     * Returns the index of the property or {@code -1} if there is no such property.
+     */
+    public int indexOf(Object name) {
+        Integer index = indexes.get(name);
+        return index == null ? -1 : index;
+    }
+
+    public String getName(int index) {
+        return names[index];
+    }
+
+    @Nullable
+    public Class<?> getPropertyType(int index) {
+        return types[index];
+    }
+
+    public boolean isReadable(int index) {
+        return getters[index] != null;
+    }
+
+    public boolean isWritable(int index) {
+        return setters[index] != null;
+    }
+
+    /**
+     * Returns {@code true} if the property is readable and its type is not primitive.
+     */
+    public boolean isNullable(int index) {
+        return getters[index] != null && types[index] != null && !types[index].isPrimitive();
+    }
+
+    /**
+     * Maps each readable property to the index of the writable property with the same name
+     * and a compatible type in the target class, or to {@code -1} if there is no such property.
+     */
+    public int[] getTargetIndexes(Class<?> targetType) {
+        return targetIndexes.computeIfAbsent(targetType, key -> {
+            BeanProperties target = of(key);
+            int[] result = new int[names.length];
+            for (int i = 0; i < names.length; i++) {
+                int targetIndex = target.indexOf(names[i]);
+                boolean compatible = getters[i] != null && targetIndex != -1 && target.isWritable(targetIndex)
+                        && types[i] != null && target.types[targetIndex] != null
+                        && org.springframework.util.ClassUtils.isAssignable(target.types[targetIndex], types[i]);
+                result[i] = compatible ? targetIndex : -1;
+            }
+            return result;
+        });
+    }
+
+    @Nullable
+    public Object read(Object bean, int index) {
+        MethodHandle getter = getters[index];
+        if (getter == null) {
+            throw new IllegalArgumentException("Property " + names[index] + " of " + type.getName()
+                    + " is not readable");
+        }
+        try {
+            return (Object) getter.invokeExact(bean);
+        } catch (Throwable e) {
+            throw FieldAccessor.rethrow(e);
+        }
+    }
+
+    /**
+     * Reads a {@code byte}, {@code short}, {@code char}, {@code int} or {@code long} property without boxing.
+     */
+    public long readLong(Object bean, int index) {
+        try {
+            return (long) primitiveGetter(index, long.class).invokeExact(bean);
+        } catch (Throwable e) {
+            throw FieldAccessor.rethrow(e);
+        }
+    }
+
+    /**
+     * Reads a {@code float} or {@code double} property without boxing.
+     */
+    public double readDouble(Object bean, int index) {
+        try {
+            return (double) primitiveGetter(index, double.class).invokeExact(bean);
+        } catch (Throwable e) {
+            throw FieldAccessor.rethrow(e);
+        }
+    }
+
+    public boolean readBoolean(Object bean, int index) {
+        try {
+            return (boolean) primitiveGetter(index, boolean.class).invokeExact(bean);
+        } catch (Throwable e) {
+            throw FieldAccessor.rethrow(e);
+        }
+    }
+
+    public void write(Object bean, int index, @Nullable Object value) {
+        MethodHandle setter = setters[index];
+        if (setter == null) {
+            throw new IllegalArgumentException("Property " + names[index] + " of " + type.getName()
+                    + " is not writable");
+        }
+        try {
+            setter.invokeExact(bean, value);
+        } catch (Throwable e) {
+            throw FieldAccessor.rethrow(e);
+        }
+    }
+
+    private MethodHandle primitiveGetter(int index, Class<?> kind) {
+        MethodHandle getter = primitiveGetters[index];
+        if (getter == null || getter.type().returnType() != kind) {
+            throw new IllegalArgumentException("Property " + names[index] + " of " + type.getName()
+                    + " can't be read as " + kind.getName());
+        }
+        return getter;
+    }
+
+    /* Primitive properties are read without boxing as long, double or boolean */
+    private static Class<?> primitiveKind(Class<?> primitiveType) {
+        if (primitiveType == boolean.class) {
+            return boolean.class;
+        }
+        if (primitiveType == float.class || primitiveType == double.class) {
+            return double.class;
+        }
+        return long.class;
+    }
+
+    @Nullable
+    private static MethodHandle compile(@Nullable Method method, MethodType methodType) {
+        if (method == null) {
+            return null;
+        }
+        try {
+            ReflectionUtils.makeAccessible(method);
+            return LOOKUP.unreflect(method).asType(methodType);
+        } catch (IllegalAccessException | RuntimeException e) {
+            /* Methods of classes in closed modules can't be made accessible */
+            return null;
+        }
+    }
+}
@@ -0,0 +1,289 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.plusminus.util;
+
+import org.springframework.lang.Nullable;
+
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * {@link Map} view of the readable bean properties of an object.
+ * Values are read through {@link BeanProperties} on access, and {@link #put} calls the setter.
+ * Like commons-collections {@code BeanMap}, a value which doesn't match the property type is converted
+ * through a constructor of the property type taking the value, or parsed from its string form
+ * for primitive properties.
+ */
+class BeanPropertyMap extends AbstractMap<String, Object> {
+
+    protected final BeanProperties properties;
+    private final Object bean;
+
+    BeanPropertyMap(Object bean) {
+        this.bean = bean;
+        this.properties = BeanProperties.of(bean.getClass());
+    }
+
+    /**
+     * Reads all properties at once. Primitive values are kept unboxed until they are accessed.
+     */
+    static Map<String, Object> snapshot(Object bean) {
+        return new Snapshot(bean);
+    }
+
+    @Override
+    public int size() {
+        return properties.readableCount();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        int index = properties.indexOf(key);
+        return index != -1 && properties.isReadable(index);
+    }
+
+    @Override
+    @Nullable
+    public Object get(Object key) {
+        int index = properties.indexOf(key);
+        if (index == -1 || !properties.isReadable(index)) {
+            return null;
+        }
+        return value(index);
+    }
+
+    @Override
+    @Nullable
+    public Object put(String key, @Nullable Object value) {
+        int index = properties.indexOf(key);
+        if (index == -1) {
+            throw new IllegalArgumentException("No property " + key + " in " + properties.getType().getName());
+        }
+        Object previous = properties.isReadable(index) ? value(index) : null;
+        properties.write(bean, index, convert(properties.getPropertyType(index), value));
+        return previous;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return new AbstractSet<Entry<String, Object>>() {
+
+            @Override
+            public int size() {
+                return BeanPropertyMap.this.size();
+            }
+
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                return new EntryIterator();
+            }
+        };
+    }
+
+    @Nullable
+    protected Object value(int index) {
+        return properties.read(bean, index);
+    }
+
+    @Nullable
+    private static Object convert(@Nullable Class<?> type, @Nullable Object value) {
+        if (value == null || type == null || type.isInstance(value)
+                || type.isPrimitive() && MethodType.methodType(type).wrap().returnType().isInstance(value)) {
+            return value;
+        }
+        try {
+            return type.getConstructor(value.getClass()).newInstance(value);
+        } catch (NoSuchMethodException e) {
+            return type.isPrimitive() ? parsePrimitive(type, value.toString()) : value;
+        } catch (InvocationTargetException e) {
+            throw new IllegalArgumentException("Can't convert " + value + " to " + type.getName(), e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Can't convert " + value + " to " + type.getName(), e);
+        }
+    }
+
+    private static Object parsePrimitive(Class<?> type, String text) {
+        if (type == boolean.class) {
+            return Boolean.valueOf(text);
+        }
+        if (type == char.class) {
+            return text.charAt(0);
+        }
+        if (type == byte.class) {
+            return Byte.valueOf(text);
+        }
+        if (type == short.class) {
+            return Short.valueOf(text);
+        }
+        if (type == int.class) {
+            return Integer.valueOf(text);
+        }
+        if (type == long.class) {
+            return Long.valueOf(text);
+        }
+        if (type == float.class) {
+            return Float.valueOf(text);
+        }
+        return Double.valueOf(text);
+    }
+
+    private final class EntryIterator implements Iterator<Entry<String, Object>> {
+
+        private int next = advance(0);
+
+        @Override
+        public boolean hasNext() {
+            return next < properties.size();
+        }
+
+        @Override
+        public Entry<String, Object> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            int index = next;
+            next = advance(index + 1);
+            return new PropertyEntry(index);
+        }
+
+        private int advance(int from) {
+            int index = from;
+            while (index < properties.size() && !properties.isReadable(index)) {
+                index++;
+            }
+            return index;
+        }
+    }
+
+    private final class PropertyEntry implements Entry<String, Object> {
+
+        private final int index;
+
+        private PropertyEntry(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public String getKey() {
+            return properties.getName(index);
+        }
+
+        @Override
+        @Nullable
+        public Object getValue() {
+            return value(index);
+        }
+
+        @Override
+        @Nullable
+        public Object setValue(@Nullable Object value) {
+            return put(getKey(), value);
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (!(object instanceof Entry)) {
+                return false;
+            }
+            Entry<?, ?> entry = (Entry<?, ?>) object;
+            Object value = getValue();
+            return getKey().equals(entry.getKey())
+                    && (value == null ? entry.getValue() == null : value.equals(entry.getValue()));
+        }
+
+        @Override
+        public int hashCode() {
+            Object value = getValue();
+            return getKey().hashCode() ^ (value == null ? 0 : value.hashCode());
+        }
+
+        @Override
+        public String toString() {
+            return getKey() + "=" + getValue();
+        }
+    }
+
+    private static final class Snapshot extends BeanPropertyMap {
+
+        private final Object[] references;
+        private final long[] primitives;
+
+        private Snapshot(Object bean) {
+            super(bean);
+            references = new Object[properties.size()];
+            primitives = new long[properties.size()];
+            for (int i = 0; i < properties.size(); i++) {
+                if (!properties.isReadable(i)) {
+                    continue;
+                }
+                Class<?> type = properties.getPropertyType(i);
+                if (type == null || !type.isPrimitive()) {
+                    references[i] = properties.read(bean, i);
+                } else if (type == boolean.class) {
+                    primitives[i] = properties.readBoolean(bean, i) ? 1 : 0;
+                } else if (type == float.class || type == double.class) {
+                    primitives[i] = Double.doubleToRawLongBits(properties.readDouble(bean, i));
+                } else {
+                    primitives[i] = properties.readLong(bean, i);
+                }
+            }
+        }
+
+        @Override
+        @Nullable
+        public Object put(String key, @Nullable Object value) {
+            throw new UnsupportedOperationException("Snapshot is read-only");
+        }
+
+        @Override
+        @Nullable
+        protected Object value(int index) {
+            Class<?> type = properties.getPropertyType(index);
+            if (type == null || !type.isPrimitive()) {
+                return references[index];
+            }
+            long bits = primitives[index];
+            if (type == boolean.class) {
+                return bits != 0;
+            }
+            if (type == double.class) {
+                return Double.longBitsToDouble(bits);
+            }
+            if (type == float.class) {
+                return (float) Double.longBitsToDouble(bits);
+            }
+            if (type == long.class) {
+                return bits;
+            }
+            if (type == int.class) {
+                return (int) bits;
+            }
+            if (type == short.class) {
+                return (short) bits;
+            }
+            if (type == byte.class) {
+                return (byte) bits;
+            }
+            return (char) bits;
+        }
+    }
+}
@@ -30,13 +30,16 @@ import software.plusminus.util.exception.LoadException;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.ParameterizedType;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -244,20 +247,84 @@ public class ClassUtils {
         return max;
     }
 
+    /**
+     * Returns the classpath-relative paths of all the readable resources on the classpath,
+     * found by a single classpath walk.
+     */
+    NavigableSet<String> getClasspathResourcePaths() {
+        return ResourceIndex.PATHS;
+    }
+
+    /**
+     * Resolves the location pattern, like {@code "classpath*:i18n/*.properties"}, with the shared resolver.
+     */
+    List<Resource> getResources(String locationPattern) {
+        try {
+            return Arrays.asList(RESOURCE_PATTERN_RESOLVER.getResources(locationPattern));
+        } catch (IOException e) {
+            throw new LoadException(e);
+        }
+    }
+
+    /**
+     * Returns the path of the resource relative to its classpath root: jar entries are relative to
+     * {@code "!/"} and files to their directory. Returns {@code null} for resources outside of the roots.
+     */
+    @Nullable
+    String toClasspathPath(Resource resource) {
+        String url;
+        try {
+            url = resource.getURL().toString();
+        } catch (IOException e) {
+            return null;
+        }
+        int separator = url.lastIndexOf("!/");
+        if (separator != -1) {
+            return url.substring(separator + 2);
+        }
+        for (String root : DirectoryRoots.ROOTS) {
+            if (url.startsWith(root)) {
+                return url.substring(root.length());
+            }
+        }
+        return null;
+    }
+
+    /* Only the paths of the resources are kept, the class indexes keep the class files */
     private static final class ResourceIndex {
 
+        private static final NavigableSet<String> PATHS;
         private static final Map<String, List<Resource>> BY_SIMPLE_NAME;
         private static final Map<String, List<Resource>> BY_PACKAGE;
 
         static {
-            List<Resource> allClasses = getAllClasses();
+            List<Resource> all = getAllResources();
+            NavigableSet<String> paths = new TreeSet<>();
+            for (Resource resource : all) {
+                String path = toClasspathPath(resource);
+                if (path != null) {
+                    paths.add(path);
+                }
+            }
+            PATHS = Collections.unmodifiableNavigableSet(paths);
+            List<Resource> allClasses = getAllClasses(all);
             BY_SIMPLE_NAME = allClasses.stream()
                     .collect(Collectors.groupingBy(ClassUtils::getSimpleClassNameFromResource));
             BY_PACKAGE = allClasses.stream()
                     .collect(Collectors.groupingBy(ClassUtils::getPackageNameFromResource));
         }
 
-        static List<Resource> getAllClasses() {
+        static List<Resource> getAllClasses(List<Resource> all) {
+            return all.stream()
+                    .filter(resource -> {
+                        String resourceName = resource.toString();
+                        return resourceName.endsWith(".class]")
+                                && !resourceName.endsWith("module-info.class]");
+                    })
+                    .collect(Collectors.toList());
+        }
+
+        private static List<Resource> getAllResources() {
             Resource[] resources;
             try {
                 resources = RESOURCE_PATTERN_RESOLVER.getResources("classpath*:**");
@@ -266,12 +333,28 @@ public class ClassUtils {
             }
             return Arrays.stream(resources)
                     .filter(Resource::isReadable)
-                    .filter(resource -> {
-                        String resourceName = resource.toString();
-                        return resourceName.endsWith(".class]")
-                                && !resourceName.endsWith("module-info.class]");
-                    })
                     .collect(Collectors.toList());
         }
     }
+
+    /* URLs of the directories on the classpath, with a trailing slash */
+    private static final class DirectoryRoots {
+
+        private static final List<String> ROOTS = getRoots();
+
+        private static List<String> getRoots() {
+            List<String> roots = new ArrayList<>();
+            try {
+                for (Resource root : RESOURCE_PATTERN_RESOLVER.getResources("classpath*:")) {
+                    String url = root.getURL().toString();
+                    if (url.startsWith("file:")) {
+                        roots.add(url.endsWith("/") ? url : url + '/');
+                    }
+                }
+            } catch (IOException e) {
+                throw new LoadException(e);
+            }
+            return Collections.unmodifiableList(roots);
+        }
+    }
 }
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.plusminus.util;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Thread-safe set comparing elements by identity.
+ * Elements are spread over lock-striped {@link IdentityHashMap}s by their identity hash code,
+ * so concurrent graph traversals rarely contend on the same stripe.
+ * Iteration works on a snapshot.
+ */
+final class ConcurrentIdentitySet<E> extends AbstractSet<E> {
+
+    private final Set<E>[] stripes;
+    private final int mask;
+
+    @SuppressWarnings("unchecked")
+    ConcurrentIdentitySet() {
+        int stripesCount = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 8 - 1) << 1;
+        stripes = new Set[stripesCount];
+        for (int i = 0; i < stripesCount; i++) {
+            stripes[i] = Collections.newSetFromMap(new IdentityHashMap<>());
+        }
+        mask = stripesCount - 1;
+    }
+
+    @Override
+    public boolean add(E element) {
+        Set<E> stripe = stripe(element);
+        synchronized (stripe) {
+            return stripe.add(element);
+        }
+    }
+
+    @Override
+    public boolean contains(Object element) {
+        Set<E> stripe = stripe(element);
+        synchronized (stripe) {
+            return stripe.contains(element);
+        }
+    }
+
+    @Override
+    public boolean remove(Object element) {
+        Set<E> stripe = stripe(element);
+        synchronized (stripe) {
+            return stripe.remove(element);
+        }
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (Set<E> stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        List<E> snapshot = new ArrayList<>();
+        for (Set<E> stripe : stripes) {
+            synchronized (stripe) {
+                snapshot.addAll(stripe);
+            }
+        }
+        Iterator<E> iterator = snapshot.iterator();
+        return new Iterator<E>() {
+
+            private E current;
+
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public E next() {
+                current = iterator.next();
+                return current;
+            }
+
+            @Override
+            public void remove() {
+                ConcurrentIdentitySet.this.remove(current);
+            }
+        };
+    }
+
+    private Set<E> stripe(Object element) {
+        int hash = System.identityHashCode(element);
+        return stripes[(hash ^ (hash >>> 16)) & mask];
+    }
+}
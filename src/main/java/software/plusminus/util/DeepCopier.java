@@ -0,0 +1,488 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.plusminus.util;
+
+import com.google.common.collect.Iterators;
+import org.springframework.lang.Nullable;
+import software.plusminus.util.exception.ConstructionException;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.regex.Pattern;
+
+/**
+ * Deep copy of an object graph. Every class is compiled once into a {@link Plan}:
+ * a constructor handle plus field copiers typed by the declared field type.
+ * Immutable JVM types and enums are shared, other JVM types are cloned if they are {@link Cloneable}
+ * and rejected otherwise, so the copy never aliases mutable state of the original.
+ * Shared references stay shared in the copy.
+ * The graph is copied iteratively, so long chains don't overflow the stack.
+ */
+final class DeepCopier {
+
+    private static final Map<Class<?>, Plan> PLANS = new ConcurrentHashMap<>();
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private final Map<Object, Object> copies = new IdentityHashMap<>();
+    private final Deque<Object[]> pending = new ArrayDeque<>();
+    private final Map<Object, List<Object>> hashed = new IdentityHashMap<>();
+
+    @SuppressWarnings("unchecked")
+    <T> T copy(T object) {
+        T copy = (T) copyReference(object);
+        while (!pending.isEmpty()) {
+            Object[] pair = pending.pop();
+            fill(pair[0], pair[1]);
+        }
+        if (!hashed.isEmpty()) {
+            fillHashed(object);
+        }
+        return copy;
+    }
+
+    /* Creates the copy of the object without its contents, which are filled later */
+    private Object copyReference(Object object) {
+        if (object == null) {
+            return null;
+        }
+        Plan plan = plan(object.getClass());
+        if (plan.kind == Kind.SHARED) {
+            return object;
+        }
+        Object copy = copies.get(object);
+        if (copy != null) {
+            return copy;
+        }
+        switch (plan.kind) {
+            case PRIMITIVE_ARRAY:
+                copy = cloneArray(object);
+                copies.put(object, copy);
+                return copy;
+            case CLONE:
+                copy = plan.cloneObject(object);
+                copies.put(object, copy);
+                return copy;
+            case OPTIONAL:
+                /* The value is only referenced here; its copy is filled like any other object */
+                copy = Optional.ofNullable(copyReference(((Optional<?>) object).orElse(null)));
+                copies.put(object, copy);
+                return copy;
+            case ARRAY:
+                copy = Array.newInstance(object.getClass().getComponentType(), Array.getLength(object));
+                break;
+            default:
+                copy = plan.newInstance(object);
+                break;
+        }
+        copies.put(object, copy);
+        pending.push(new Object[]{object, copy});
+        return copy;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void fill(Object original, Object copy) {
+        Plan plan = plan(original.getClass());
+        switch (plan.kind) {
+            case ARRAY:
+                Object[] source = (Object[]) original;
+                Object[] target = (Object[]) copy;
+                for (int i = 0; i < source.length; i++) {
+                    target[i] = copyReference(source[i]);
+                }
+                break;
+            case COLLECTION:
+                Collection<Object> collection = (Collection<Object>) copy;
+                for (Object element : (Collection<?>) original) {
+                    collection.add(copyReference(element));
+                }
+                break;
+            case HASHED:
+                List<Object> elements = new ArrayList<>();
+                if (original instanceof Map) {
+                    for (Map.Entry<?, ?> entry : ((Map<?, ?>) original).entrySet()) {
+                        elements.add(copyReference(entry.getKey()));
+                        elements.add(copyReference(entry.getValue()));
+                    }
+                } else {
+                    for (Object element : (Collection<?>) original) {
+                        elements.add(copyReference(element));
+                    }
+                }
+                hashed.put(original, elements);
+                break;
+            default:
+                for (FieldCopier field : plan.fields) {
+                    field.copy(original, copy, this);
+                }
+                break;
+        }
+    }
+
+    /* Hashed and ordered containers are filled only when the copied graph is complete,
+       in depth-first post-order, so every container reachable from their elements is filled before them
+       and the hash codes and orderings of the elements are final. Only containers on a cycle
+       back to themselves can't be ordered this way. */
+    @SuppressWarnings("unchecked")
+    private void fillHashed(Object root) {
+        if (!copies.containsKey(root)) {
+            return;
+        }
+        Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<Object[]> stack = new ArrayDeque<>();
+        visited.add(root);
+        stack.push(new Object[]{root, children(root)});
+        while (!stack.isEmpty()) {
+            Object[] frame = stack.peek();
+            Iterator<?> children = (Iterator<?>) frame[1];
+            if (children.hasNext()) {
+                Object child = children.next();
+                if (child != null && copies.containsKey(child) && visited.add(child)) {
+                    stack.push(new Object[]{child, children(child)});
+                }
+                continue;
+            }
+            stack.pop();
+            List<Object> elements = hashed.remove(frame[0]);
+            if (elements == null) {
+                continue;
+            }
+            Object copy = copies.get(frame[0]);
+            if (copy instanceof Map) {
+                Map<Object, Object> map = (Map<Object, Object>) copy;
+                for (int i = 0; i < elements.size(); i += 2) {
+                    map.put(elements.get(i), elements.get(i + 1));
+                }
+            } else {
+                ((Collection<Object>) copy).addAll(elements);
+            }
+        }
+    }
+
+    /* The objects referenced by an original which may have been copied */
+    private Iterator<?> children(Object original) {
+        Plan plan = plan(original.getClass());
+        switch (plan.kind) {
+            case ARRAY:
+                return Arrays.asList((Object[]) original).iterator();
+            case COLLECTION:
+                return ((Collection<?>) original).iterator();
+            case OPTIONAL:
+                Optional<?> optional = (Optional<?>) original;
+                return optional.isPresent()
+                        ? Collections.singleton(optional.get()).iterator()
+                        : Collections.emptyIterator();
+            case HASHED:
+                if (original instanceof Map) {
+                    Map<?, ?> map = (Map<?, ?>) original;
+                    return Iterators.concat(map.keySet().iterator(), map.values().iterator());
+                }
+                return ((Collection<?>) original).iterator();
+            case OBJECT:
+                List<Object> values = new ArrayList<>(plan.fields.length);
+                for (FieldCopier field : plan.fields) {
+                    if (!field.type.isPrimitive() && !field.shared) {
+                        values.add(field.accessor.get(original));
+                    }
+                }
+                return values.iterator();
+            default:
+                return Collections.emptyIterator();
+        }
+    }
+
+    /* URLs are not shared: their handler caches state, and equals and hashCode resolve the host */
+    private static URL copyUrl(URL url) throws MalformedURLException {
+        return new URL(url.toExternalForm());
+    }
+
+    private static Object cloneArray(Object array) {
+        int length = Array.getLength(array);
+        Object copy = Array.newInstance(array.getClass().getComponentType(), length);
+        System.arraycopy(array, 0, copy, 0, length);
+        return copy;
+    }
+
+    private static Plan plan(Class<?> type) {
+        return PLANS.computeIfAbsent(type, Plan::new);
+    }
+
+    /* Enums and the value types of the JDK, like strings, boxed numbers, java.time types or paths */
+    private static boolean isImmutable(Class<?> type) {
+        if (type.isPrimitive() || Enum.class.isAssignableFrom(type)
+                || Path.class.isAssignableFrom(type) || type == java.io.File.class) {
+            return true;
+        }
+        if (!ClassUtils.isJavaClass(type) || !Modifier.isFinal(type.getModifiers()) || type.isArray()) {
+            return false;
+        }
+        String packageName = type.getPackage().getName();
+        return packageName.equals("java.lang") && type != StringBuilder.class && type != StringBuffer.class
+                || packageName.equals("java.math") || packageName.startsWith("java.time")
+                || type == java.util.UUID.class || type == java.util.Locale.class
+                || type == java.util.Currency.class || type == java.net.URI.class
+                || type == Pattern.class;
+    }
+
+    /* Sets, maps and priority queues depend on the hash codes or the ordering of their elements */
+    private static boolean isHashed(Class<?> type) {
+        return Set.class.isAssignableFrom(type) || Map.class.isAssignableFrom(type)
+                || PriorityQueue.class.isAssignableFrom(type) || PriorityBlockingQueue.class.isAssignableFrom(type);
+    }
+
+    private enum Kind {
+        SHARED, CLONE, OPTIONAL, PRIMITIVE_ARRAY, ARRAY, COLLECTION, HASHED, OBJECT
+    }
+
+    private static final class Plan {
+
+        private final Kind kind;
+        private final MethodHandle constructor;
+        private final FieldCopier[] fields;
+
+        private Plan(Class<?> type) {
+            if (isImmutable(type) || type == Object.class) {
+                kind = Kind.SHARED;
+            } else if (type.isArray()) {
+                kind = type.getComponentType().isPrimitive() ? Kind.PRIMITIVE_ARRAY : Kind.ARRAY;
+            } else if (type == Optional.class) {
+                kind = Kind.OPTIONAL;
+            } else if (isHashed(type)) {
+                kind = Kind.HASHED;
+            } else if (Collection.class.isAssignableFrom(type)) {
+                kind = Kind.COLLECTION;
+            } else if (ClassUtils.isJavaClass(type)) {
+                /* Other JVM classes can't be introspected reliably: mutable ones like Date,
+                   Calendar or BitSet are cloned, URLs are parsed again, and the rest can't be copied safely */
+                kind = Kind.CLONE;
+            } else {
+                kind = Kind.OBJECT;
+            }
+            if (kind == Kind.CLONE) {
+                constructor = findClone(type);
+            } else if (kind == Kind.COLLECTION || kind == Kind.HASHED) {
+                constructor = findContainerConstructor(type);
+            } else if (kind == Kind.OBJECT) {
+                constructor = findConstructor(type);
+            } else {
+                constructor = null;
+            }
+            fields = kind == Kind.OBJECT
+                    ? FieldUtils.getFieldsStream(type)
+                            .filter(field -> !Modifier.isStatic(field.getModifiers()))
+                            .map(field -> new FieldCopier(FieldAccessor.of(field)))
+                            .toArray(FieldCopier[]::new)
+                    : new FieldCopier[0];
+        }
+
+        private Object cloneObject(Object original) {
+            if (constructor == null) {
+                throw new ConstructionException("Can't deep copy " + original.getClass().getName()
+                        + ": it is neither immutable nor cloneable");
+            }
+            return invoke(original);
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private Object newInstance(Object original) {
+            Comparator<?> comparator = comparator(original);
+            if (constructor != null) {
+                return invoke(comparator);
+            }
+            if (kind == Kind.OBJECT) {
+                throw new ConstructionException("No no-arg constructor in " + original.getClass().getName());
+            }
+            /* Sorted and enum containers keep their ordering; others fall back to
+               the closest standard implementation, e.g. for unmodifiable views */
+            if (original instanceof EnumSet) {
+                EnumSet<?> copy = ((EnumSet<?>) original).clone();
+                copy.clear();
+                return copy;
+            }
+            if (original instanceof EnumMap) {
+                EnumMap copy = new EnumMap((EnumMap) original);
+                copy.clear();
+                return copy;
+            }
+            if (original instanceof SortedSet) {
+                return new TreeSet<>(comparator);
+            }
+            if (original instanceof SortedMap) {
+                return new TreeMap<>(comparator);
+            }
+            if (original instanceof PriorityQueue || original instanceof PriorityBlockingQueue) {
+                return new PriorityQueue<>(comparator);
+            }
+            if (original instanceof Set) {
+                return new LinkedHashSet<>();
+            }
+            if (original instanceof Map) {
+                return new LinkedHashMap<>();
+            }
+            return new ArrayList<>();
+        }
+
+        private Object invoke(@Nullable Object argument) {
+            try {
+                return constructor.type().parameterCount() == 0
+                        ? (Object) constructor.invokeExact()
+                        : (Object) constructor.invokeExact(argument);
+            } catch (Exception e) {
+                throw new ConstructionException(e);
+            } catch (Throwable e) {
+                throw (Error) e;
+            }
+        }
+
+        @Nullable
+        private static Comparator<?> comparator(Object original) {
+            if (original instanceof SortedSet) {
+                return ((SortedSet<?>) original).comparator();
+            }
+            if (original instanceof SortedMap) {
+                return ((SortedMap<?, ?>) original).comparator();
+            }
+            if (original instanceof PriorityQueue) {
+                return ((PriorityQueue<?>) original).comparator();
+            }
+            if (original instanceof PriorityBlockingQueue) {
+                return ((PriorityBlockingQueue<?>) original).comparator();
+            }
+            return null;
+        }
+
+        @Nullable
+        private static MethodHandle findConstructor(Class<?> type) {
+            try {
+                Constructor<?> constructor = type.getDeclaredConstructor();
+                constructor.setAccessible(true);
+                return LOOKUP.unreflectConstructor(constructor)
+                        .asType(MethodType.methodType(Object.class));
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                return null;
+            }
+        }
+
+        /* Containers ordered by a comparator are created with it, as (Object) -> Object;
+           other containers through their public no-arg constructor */
+        @Nullable
+        private static MethodHandle findContainerConstructor(Class<?> type) {
+            if (Modifier.isAbstract(type.getModifiers()) || !Modifier.isPublic(type.getModifiers())) {
+                return null;
+            }
+            boolean ordered = SortedSet.class.isAssignableFrom(type) || SortedMap.class.isAssignableFrom(type)
+                    || PriorityQueue.class.isAssignableFrom(type) || PriorityBlockingQueue.class.isAssignableFrom(type);
+            try {
+                if (!ordered) {
+                    return LOOKUP.unreflectConstructor(type.getConstructor())
+                            .asType(MethodType.methodType(Object.class));
+                }
+                try {
+                    return LOOKUP.unreflectConstructor(type.getConstructor(Comparator.class))
+                            .asType(MethodType.methodType(Object.class, Object.class));
+                } catch (NoSuchMethodException e) {
+                    MethodHandle constructor = LOOKUP.unreflectConstructor(
+                            type.getConstructor(int.class, Comparator.class));
+                    return MethodHandles.insertArguments(constructor, 0, 11)
+                            .asType(MethodType.methodType(Object.class, Object.class));
+                }
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                return null;
+            }
+        }
+
+        /* Public clone() of a Cloneable JVM class, as (Object) -> Object */
+        @Nullable
+        private static MethodHandle findClone(Class<?> type) {
+            try {
+                if (type == URL.class) {
+                    return LOOKUP.findStatic(DeepCopier.class, "copyUrl", MethodType.methodType(URL.class, URL.class))
+                            .asType(MethodType.methodType(Object.class, Object.class));
+                }
+                if (!Cloneable.class.isAssignableFrom(type)) {
+                    return null;
+                }
+                Method clone = type.getMethod("clone");
+                return LOOKUP.unreflect(clone)
+                        .asType(MethodType.methodType(Object.class, Object.class));
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                return null;
+            }
+        }
+    }
+
+    /* Copies a field according to its declared type: primitives without boxing,
+       immutable types by reference, and everything else through the copier */
+    private static final class FieldCopier {
+
+        private final FieldAccessor accessor;
+        private final Class<?> type;
+        private final boolean shared;
+
+        private FieldCopier(FieldAccessor accessor) {
+            this.accessor = accessor;
+            this.type = accessor.getField().getType();
+            this.shared = isImmutable(type);
+        }
+
+        private void copy(Object original, Object copy, DeepCopier copier) {
+            if (type == int.class) {
+                accessor.setInt(copy, accessor.getInt(original));
+            } else if (type == long.class) {
+                accessor.setLong(copy, accessor.getLong(original));
+            } else if (type == double.class) {
+                accessor.setDouble(copy, accessor.getDouble(original));
+            } else if (type == boolean.class) {
+                accessor.setBoolean(copy, accessor.getBoolean(original));
+            } else if (shared) {
+                accessor.set(copy, accessor.get(original));
+            } else {
+                accessor.set(copy, copier.copyReference(accessor.get(original)));
+            }
+        }
+    }
+}
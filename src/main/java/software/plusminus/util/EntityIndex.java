@@ -0,0 +1,243 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.plusminus.util;
+
+import org.springframework.lang.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BinaryOperator;
+
+/**
+ * Index of entities by their concrete class and id, see {@link EntityUtils#findId(Object)}.
+ * Integral ids are kept in {@link LongHashMap}s without boxing; other ids in hash maps.
+ * Composite and embedded ids are keyed by their {@link EntityKey}, see {@link EntityUtils#findIdKey(Object)}.
+ * Entities without an id can't be indexed. Not thread-safe.
+ *
+ * @author Taras Shpek
+ */
+public final class EntityIndex<T> {
+
+    private final Map<Class<?>, Group<T>> groups = new HashMap<>();
+    @Nullable
+    private Group<T> lastGroup;
+
+    @Nullable
+    public T put(T entity) {
+        Group<T> group = group(entity.getClass());
+        return group.numeric
+                ? group.byLongId.put(group.readLongId(entity), entity)
+                : group.byId.put(group.readId(entity), entity);
+    }
+
+    public void putAll(Collection<? extends T> entities) {
+        for (T entity : entities) {
+            put(entity);
+        }
+    }
+
+    /**
+     * Indexes the entity or, if an entity with the same class and id is indexed,
+     * replaces it with the result of the merge function. Like {@link Map#merge}, the entity
+     * is removed if the merge function returns {@code null}.
+     *
+     * @return the indexed entity or {@code null} if it was removed
+     */
+    @Nullable
+    public T merge(T entity, BinaryOperator<T> merger) {
+        Group<T> group = group(entity.getClass());
+        if (group.numeric) {
+            long id = group.readLongId(entity);
+            T existing = group.byLongId.get(id);
+            T merged = existing == null ? entity : merger.apply(existing, entity);
+            if (merged == null) {
+                group.byLongId.remove(id);
+            } else {
+                group.byLongId.put(id, merged);
+            }
+            return merged;
+        }
+        return group.byId.merge(group.readId(entity), entity, merger);
+    }
+
+    public void mergeAll(Collection<? extends T> entities, BinaryOperator<T> merger) {
+        for (T entity : entities) {
+            merge(entity, merger);
+        }
+    }
+
+    @Nullable
+    public T get(Class<?> type, long id) {
+        Group<T> group = groups.get(type);
+        if (group == null) {
+            return null;
+        }
+        return group.numeric ? group.byLongId.get(id) : group.byId.get(id);
+    }
+
+    /**
+     * Returns the entity of the class with the id; composite ids are looked up by their {@link EntityKey}.
+     */
+    @Nullable
+    public T get(Class<?> type, Object id) {
+        Group<T> group = groups.get(type);
+        if (group == null) {
+            return null;
+        }
+        if (group.numeric) {
+            return isIntegral(id) ? group.byLongId.get(((Number) id).longValue()) : null;
+        }
+        return group.byId.get(id);
+    }
+
+    /**
+     * Returns the indexed entity with the same class and id as the entity
+     * or {@code null} if there is none, which is always the case for entities without an id.
+     */
+    @Nullable
+    public T find(T entity) {
+        Group<T> group = existingGroup(entity.getClass());
+        if (group == null) {
+            return null;
+        }
+        if (group.numeric) {
+            return group.primitive || group.findId(entity) != null
+                    ? group.byLongId.get(group.readLongId(entity)) : null;
+        }
+        Object id = group.findId(entity);
+        return id == null ? null : group.byId.get(id);
+    }
+
+    public boolean contains(T entity) {
+        return find(entity) != null;
+    }
+
+    @Nullable
+    public T remove(T entity) {
+        Group<T> group = existingGroup(entity.getClass());
+        if (group == null) {
+            return null;
+        }
+        if (group.numeric) {
+            return group.primitive || group.findId(entity) != null
+                    ? group.byLongId.remove(group.readLongId(entity)) : null;
+        }
+        Object id = group.findId(entity);
+        return id == null ? null : group.byId.remove(id);
+    }
+
+    public int size() {
+        int size = 0;
+        for (Group<T> group : groups.values()) {
+            size += group.numeric ? group.byLongId.size() : group.byId.size();
+        }
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public List<T> values() {
+        List<T> result = new ArrayList<>(size());
+        for (Group<T> group : groups.values()) {
+            if (group.numeric) {
+                group.byLongId.forEach((id, entity) -> result.add(entity));
+            } else {
+                result.addAll(group.byId.values());
+            }
+        }
+        return result;
+    }
+
+    /* Batches are mostly of a single class, so the last group is checked before the map */
+    private Group<T> group(Class<?> type) {
+        Group<T> group = lastGroup;
+        if (group == null || group.type != type) {
+            group = groups.computeIfAbsent(type, Group::new);
+            lastGroup = group;
+        }
+        return group;
+    }
+
+    /* Lookups don't create groups, so querying an index doesn't grow it */
+    @Nullable
+    private Group<T> existingGroup(Class<?> type) {
+        Group<T> group = lastGroup;
+        if (group == null || group.type != type) {
+            group = groups.get(type);
+            if (group != null) {
+                lastGroup = group;
+            }
+        }
+        return group;
+    }
+
+    private static boolean isIntegral(Object id) {
+        return id instanceof Long || id instanceof Integer || id instanceof Short || id instanceof Byte;
+    }
+
+    private static boolean isIntegralType(Class<?> type) {
+        return type == long.class || type == int.class || type == short.class || type == byte.class
+                || type == Long.class || type == Integer.class || type == Short.class || type == Byte.class;
+    }
+
+    private static final class Group<T> {
+
+        private final Class<?> type;
+        private final FieldAccessor id;
+        private final boolean numeric;
+        private final boolean primitive;
+        private final boolean composite;
+        private final LongHashMap<T> byLongId;
+        private final Map<Object, T> byId;
+
+        private Group(Class<?> type) {
+            this.type = type;
+            this.id = EntityUtils.findIdAccessor(type)
+                    .orElseThrow(() -> new IllegalArgumentException("No id field in " + type.getName()));
+            Class<?> idType = id.getField().getType();
+            this.composite = EntityUtils.findIdFields(type).size() > 1 || EntityUtils.isEmbeddedIdField(id.getField());
+            this.numeric = !composite && isIntegralType(idType);
+            this.primitive = idType.isPrimitive();
+            this.byLongId = numeric ? new LongHashMap<>() : null;
+            this.byId = numeric ? null : new HashMap<>();
+        }
+
+        private long readLongId(Object entity) {
+            if (primitive) {
+                return id.getLong(entity);
+            }
+            return ((Number) readId(entity)).longValue();
+        }
+
+        private Object readId(Object entity) {
+            Object value = findId(entity);
+            if (value == null) {
+                throw new IllegalArgumentException("Entity " + entity + " has no id");
+            }
+            return value;
+        }
+
+        @Nullable
+        private Object findId(Object entity) {
+            return composite ? EntityUtils.findIdKey(entity) : id.get(entity);
+        }
+    }
+}
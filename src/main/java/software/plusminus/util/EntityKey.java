@@ -0,0 +1,65 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.plusminus.util;
+
+import java.util.Arrays;
+
+/**
+ * Immutable key built from the id components of an entity, see {@link EntityUtils#findIdKey(Object)}.
+ * The hash code is computed once, and equality compares the components with their own {@code equals}.
+ *
+ * @author Taras Shpek
+ */
+public final class EntityKey {
+
+    private final Object[] components;
+    private final int hash;
+
+    EntityKey(Object[] components) {
+        this.components = components;
+        this.hash = Arrays.hashCode(components);
+    }
+
+    public int size() {
+        return components.length;
+    }
+
+    public Object getComponent(int index) {
+        return components[index];
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        if (this == object) {
+            return true;
+        }
+        if (!(object instanceof EntityKey)) {
+            return false;
+        }
+        EntityKey key = (EntityKey) object;
+        return hash == key.hash && Arrays.equals(components, key.components);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(components);
+    }
+}
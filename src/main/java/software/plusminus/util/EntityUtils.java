@@ -19,12 +19,25 @@ import lombok.experimental.UtilityClass;
 import org.springframework.lang.Nullable;
 
 import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 @UtilityClass
 public class EntityUtils {
 
+    /* Id accessor per entity class; classes without an id field are cached as empty */
+    private static final Map<Class<?>, Optional<FieldAccessor>> ID_ACCESSORS = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, IdKeyPlan> ID_KEY_PLANS = new ConcurrentHashMap<>();
+
     @Nullable
     public <T> Object findId(T entity) {
         return findId(entity, Object.class);
@@ -32,16 +45,192 @@ public class EntityUtils {
 
     @Nullable
     public <T, I> I findId(T entity, Class<I> idType) {
-        Optional<Field> idField = findIdField(entity.getClass());
-        if (!idField.isPresent()) {
+        FieldAccessor accessor = findIdAccessor(entity.getClass()).orElse(null);
+        if (accessor == null) {
+            return null;
+        }
+        Object id = accessor.get(entity);
+        if (id == null) {
             return null;
         }
-        return FieldUtils.read(entity, idType, idField.get());
+        return idType.cast(id);
     }
     
+    /**
+     * Builds a key from all the id fields of the entity, like {@code @IdClass} ids annotated with {@code @Id},
+     * or from the fields of an {@code @EmbeddedId} object. Returns {@code null} if the entity has no id
+     * or a component of the id is {@code null}.
+     */
+    @Nullable
+    public <T> EntityKey findIdKey(T entity) {
+        return ID_KEY_PLANS.computeIfAbsent(entity.getClass(), IdKeyPlan::new).read(entity);
+    }
+
+    /**
+     * Returns all the fields annotated with {@code @Id} or {@code @EmbeddedId}.
+     */
+    public List<Field> findIdFields(Class<?> type) {
+        return FieldUtils.getFieldsStream(type)
+                .filter(EntityUtils::isIdField)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Reads the {@code long} or {@code Long} ids of the entities without boxing; entities without an id are skipped.
+     */
+    public <T> long[] findLongIds(Collection<T> entities) {
+        return findLongIds(entities, false);
+    }
+
+    public <T> long[] findLongIds(Collection<T> entities, boolean parallel) {
+        Object[] array = entities.toArray();
+        long[] ids = new long[array.length];
+        boolean[] missing = new boolean[array.length];
+        IntStream indexes = IntStream.range(0, array.length);
+        if (parallel) {
+            indexes = indexes.parallel();
+        }
+        indexes.forEach(new LongIdReader(array, ids, missing));
+        int count = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (!missing[i]) {
+                ids[count++] = ids[i];
+            }
+        }
+        return count == ids.length ? ids : Arrays.copyOf(ids, count);
+    }
+
+    public <T> LongHashSet findLongIdSet(Collection<T> entities) {
+        return findLongIdSet(entities, false);
+    }
+
+    public <T> LongHashSet findLongIdSet(Collection<T> entities, boolean parallel) {
+        long[] ids = findLongIds(entities, parallel);
+        LongHashSet result = new LongHashSet(ids.length);
+        result.addAll(ids);
+        return result;
+    }
+
     public Optional<Field> findIdField(Class<?> type) {
-        return FieldUtils.findFirst(type, field -> Stream.of(field.getAnnotations())
-                .anyMatch(annotation -> annotation.annotationType().getSimpleName().equalsIgnoreCase("id")));
+        return findIdAccessor(type).map(FieldAccessor::getField);
     }
 
+    @Nullable
+    private FieldAccessor findLongIdAccessor(Class<?> type) {
+        FieldAccessor accessor = findIdAccessor(type).orElse(null);
+        if (accessor == null) {
+            return null;
+        }
+        Class<?> idType = accessor.getField().getType();
+        if (idType != long.class && idType != Long.class) {
+            throw new IllegalArgumentException("Id of " + type.getName() + " is not long but " + idType.getName());
+        }
+        return accessor;
+    }
+
+    Optional<FieldAccessor> findIdAccessor(Class<?> type) {
+        return ID_ACCESSORS.computeIfAbsent(type, t -> FieldUtils.findFirst(t, EntityUtils::isIdField)
+                .map(FieldAccessor::of));
+    }
+
+    private boolean isIdField(Field field) {
+        return hasAnnotation(field, "id") || isEmbeddedIdField(field);
+    }
+
+    boolean isEmbeddedIdField(Field field) {
+        return hasAnnotation(field, "embeddedid");
+    }
+
+    private boolean hasAnnotation(Field field, String simpleName) {
+        return Stream.of(field.getAnnotations())
+                .anyMatch(annotation -> annotation.annotationType().getSimpleName().equalsIgnoreCase(simpleName));
+    }
+
+    /* The accessor is looked up in the cache per entity, so lists mixing subclasses are supported */
+    private static final class LongIdReader implements IntConsumer {
+
+        private final Object[] entities;
+        private final long[] ids;
+        private final boolean[] missing;
+
+        private LongIdReader(Object[] entities, long[] ids, boolean[] missing) {
+            this.entities = entities;
+            this.ids = ids;
+            this.missing = missing;
+        }
+
+        @Override
+        public void accept(int index) {
+            Object entity = entities[index];
+            FieldAccessor accessor = findLongIdAccessor(entity.getClass());
+            if (accessor == null) {
+                missing[index] = true;
+            } else if (accessor.getField().getType() == long.class) {
+                ids[index] = accessor.getLong(entity);
+            } else {
+                Long id = (Long) accessor.get(entity);
+                if (id == null) {
+                    missing[index] = true;
+                } else {
+                    ids[index] = id;
+                }
+            }
+        }
+    }
+
+    /* Id fields of a class; the fields of embedded ids are flattened into the key components */
+    private static final class IdKeyPlan {
+
+        private final FieldAccessor[] fields;
+        private final FieldAccessor[][] embedded;
+        private final int size;
+
+        private IdKeyPlan(Class<?> type) {
+            List<Field> idFields = findIdFields(type);
+            fields = new FieldAccessor[idFields.size()];
+            embedded = new FieldAccessor[idFields.size()][];
+            int components = 0;
+            for (int i = 0; i < fields.length; i++) {
+                Field field = idFields.get(i);
+                fields[i] = FieldAccessor.of(field);
+                if (isEmbeddedIdField(field)) {
+                    embedded[i] = FieldUtils.getFieldsStream(field.getType())
+                            .filter(f -> !Modifier.isStatic(f.getModifiers()))
+                            .map(FieldAccessor::of)
+                            .toArray(FieldAccessor[]::new);
+                    components += embedded[i].length;
+                } else {
+                    components++;
+                }
+            }
+            size = components;
+        }
+
+        @Nullable
+        private EntityKey read(Object entity) {
+            if (fields.length == 0) {
+                return null;
+            }
+            Object[] components = new Object[size];
+            int index = 0;
+            for (int i = 0; i < fields.length; i++) {
+                Object value = fields[i].get(entity);
+                if (value == null) {
+                    return null;
+                }
+                if (embedded[i] == null) {
+                    components[index++] = value;
+                    continue;
+                }
+                for (FieldAccessor component : embedded[i]) {
+                    Object componentValue = component.get(value);
+                    if (componentValue == null) {
+                        return null;
+                    }
+                    components[index++] = componentValue;
+                }
+            }
+            return new EntityKey(components);
+        }
+    }
 }
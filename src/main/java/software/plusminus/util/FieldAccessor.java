@@ -0,0 +1,295 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.plusminus.util;
+
+import org.springframework.lang.Nullable;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compiled read/write access to a single field.
+ * Accessors are cached per field and backed by method handles, so repeated access skips
+ * the reflective checks of {@link Field#get(Object)} and primitive values are never boxed.
+ *
+ * @author Taras Shpek
+ */
+public final class FieldAccessor {
+
+    private static final Map<Field, FieldAccessor> ACCESSORS = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, Map<String, FieldAccessor>> ACCESSORS_BY_NAME = new ConcurrentHashMap<>();
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private final Field field;
+    private final MethodHandle getter;
+    @Nullable
+    private final MethodHandle setter;
+    @Nullable
+    private final MethodHandle intGetter;
+    @Nullable
+    private final MethodHandle longGetter;
+    @Nullable
+    private final MethodHandle doubleGetter;
+    @Nullable
+    private final MethodHandle booleanGetter;
+    @Nullable
+    private final MethodHandle intSetter;
+    @Nullable
+    private final MethodHandle longSetter;
+    @Nullable
+    private final MethodHandle doubleSetter;
+    @Nullable
+    private final MethodHandle booleanSetter;
+
+    private FieldAccessor(Field field) {
+        this.field = field;
+        ReflectionUtils.makeAccessible(field);
+        MethodHandle rawGetter = unreflectGetter(field);
+        MethodHandle rawSetter = unreflectSetter(field);
+        this.getter = rawGetter.asType(MethodType.methodType(Object.class, Object.class));
+        this.setter = rawSetter == null ? null
+                : rawSetter.asType(MethodType.methodType(void.class, Object.class, Object.class));
+        this.intGetter = adaptGetter(rawGetter, int.class);
+        this.longGetter = adaptGetter(rawGetter, long.class);
+        this.doubleGetter = adaptGetter(rawGetter, double.class);
+        this.booleanGetter = adaptGetter(rawGetter, boolean.class);
+        this.intSetter = adaptSetter(rawSetter, int.class);
+        this.longSetter = adaptSetter(rawSetter, long.class);
+        this.doubleSetter = adaptSetter(rawSetter, double.class);
+        this.booleanSetter = adaptSetter(rawSetter, boolean.class);
+    }
+
+    public static FieldAccessor of(Field field) {
+        return ACCESSORS.computeIfAbsent(field, FieldAccessor::new);
+    }
+
+    public static FieldAccessor of(Class<?> clazz, String fieldName) {
+        return ACCESSORS_BY_NAME.computeIfAbsent(clazz, key -> new ConcurrentHashMap<>())
+                .computeIfAbsent(fieldName, name -> FieldUtils.findFirst(clazz, field -> field.getName().equals(name))
+                        .map(FieldAccessor::of)
+                        .orElseThrow(() -> new IllegalArgumentException(
+                                "No field " + name + " in " + clazz.getName())));
+    }
+
+    public Field getField() {
+        return field;
+    }
+
+    public boolean isWritable() {
+        return setter != null;
+    }
+
+    @Nullable
+    public Object get(Object object) {
+        try {
+            return (Object) getter.invokeExact(object);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    public int getInt(Object object) {
+        try {
+            return (int) require(intGetter, int.class).invokeExact(object);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    public long getLong(Object object) {
+        try {
+            return (long) require(longGetter, long.class).invokeExact(object);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    public double getDouble(Object object) {
+        try {
+            return (double) require(doubleGetter, double.class).invokeExact(object);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    public boolean getBoolean(Object object) {
+        try {
+            return (boolean) require(booleanGetter, boolean.class).invokeExact(object);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    /**
+     * Like {@link Field#set(Object, Object)}, throws {@link IllegalArgumentException} if the value
+     * is {@code null} for a primitive field or the object or the value has a wrong type.
+     */
+    public void set(Object object, @Nullable Object value) {
+        MethodHandle handle = requireSetter(setter, field.getType());
+        if (value == null && field.getType().isPrimitive()) {
+            throw new IllegalArgumentException("Can't set the primitive field " + field + " to null");
+        }
+        try {
+            handle.invokeExact(object, value);
+        } catch (ClassCastException e) {
+            throw new IllegalArgumentException("Can't set the field " + field + " to " + value, e);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    public void setInt(Object object, int value) {
+        try {
+            requireSetter(intSetter, int.class).invokeExact(object, value);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    public void setLong(Object object, long value) {
+        try {
+            requireSetter(longSetter, long.class).invokeExact(object, value);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    public void setDouble(Object object, double value) {
+        try {
+            requireSetter(doubleSetter, double.class).invokeExact(object, value);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    public void setBoolean(Object object, boolean value) {
+        try {
+            requireSetter(booleanSetter, boolean.class).invokeExact(object, value);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private MethodHandle requireSetter(@Nullable MethodHandle handle, Class<?> type) {
+        if (setter == null) {
+            throw new IllegalStateException("Field " + field + " is not writable");
+        }
+        return require(handle, type);
+    }
+
+    private MethodHandle require(@Nullable MethodHandle handle, Class<?> type) {
+        if (handle == null) {
+            throw new IllegalArgumentException("Field " + field + " can't be accessed as " + type.getName());
+        }
+        return handle;
+    }
+
+    private static MethodHandle unreflectGetter(Field field) {
+        try {
+            MethodHandle handle = LOOKUP.unreflectGetter(field);
+            if (Modifier.isStatic(field.getModifiers())) {
+                handle = MethodHandles.dropArguments(handle, 0, Object.class);
+            }
+            return handle;
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Nullable
+    private static MethodHandle unreflectSetter(Field field) {
+        try {
+            MethodHandle handle = LOOKUP.unreflectSetter(field);
+            if (Modifier.isStatic(field.getModifiers())) {
+                handle = MethodHandles.dropArguments(handle, 0, Object.class);
+            }
+            return handle;
+        } catch (IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    /* Only exact matches, widening primitive conversions and unboxing of the matching
+       wrapper are allowed, so getLong on an int field works but getInt on a long field does not. */
+    @Nullable
+    private static MethodHandle adaptGetter(MethodHandle getter, Class<?> primitiveType) {
+        Class<?> fieldType = getter.type().returnType();
+        if (!isConvertible(fieldType, primitiveType)) {
+            return null;
+        }
+        return getter.asType(MethodType.methodType(primitiveType, Object.class));
+    }
+
+    @Nullable
+    private static MethodHandle adaptSetter(@Nullable MethodHandle setter, Class<?> primitiveType) {
+        if (setter == null) {
+            return null;
+        }
+        Class<?> fieldType = setter.type().parameterType(1);
+        if (!isConvertible(primitiveType, fieldType)) {
+            return null;
+        }
+        return setter.asType(MethodType.methodType(void.class, Object.class, primitiveType));
+    }
+
+    private static boolean isConvertible(Class<?> from, Class<?> to) {
+        if (from == to) {
+            return true;
+        }
+        if (!from.isPrimitive()) {
+            return to.isPrimitive() && from == wrap(to);
+        }
+        if (!to.isPrimitive()) {
+            return to == wrap(from);
+        }
+        return widens(from, to);
+    }
+
+    private static boolean widens(Class<?> from, Class<?> to) {
+        if (to == long.class) {
+            return from == int.class || from == short.class || from == byte.class || from == char.class;
+        }
+        if (to == double.class) {
+            return from == float.class || from == int.class || from == long.class
+                    || from == short.class || from == byte.class || from == char.class;
+        }
+        if (to == int.class) {
+            return from == short.class || from == byte.class || from == char.class;
+        }
+        return false;
+    }
+
+    private static Class<?> wrap(Class<?> primitiveType) {
+        return MethodType.methodType(primitiveType).wrap().returnType();
+    }
+
+    /* Shared with BeanProperties: unchecked exceptions and errors thrown by method handles propagate as they are */
+    static RuntimeException rethrow(Throwable throwable) {
+        if (throwable instanceof RuntimeException) {
+            return (RuntimeException) throwable;
+        }
+        if (throwable instanceof Error) {
+            throw (Error) throwable;
+        }
+        return new IllegalStateException(throwable);
+    }
+}
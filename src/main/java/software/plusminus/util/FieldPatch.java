@@ -0,0 +1,110 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.plusminus.util;
+
+import org.springframework.lang.Nullable;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.BitSet;
+
+/**
+ * Changed fields between two instances of a class, see {@link FieldUtils#diff(Object, Object)}.
+ * Field indexes refer to the non-static fields of the class in {@link FieldUtils#getFieldsStream} order;
+ * the changes are stored compactly, {@code i} being the position of a change, not a field index.
+ *
+ * @author Taras Shpek
+ */
+public final class FieldPatch {
+
+    private final Class<?> type;
+    private final FieldAccessor[] fields;
+    private final BitSet changed;
+    private final int[] indexes;
+    private final Object[] oldValues;
+    private final Object[] newValues;
+
+    FieldPatch(Class<?> type, FieldAccessor[] fields, BitSet changed, int[] indexes,
+               Object[] oldValues, Object[] newValues) {
+        this.type = type;
+        this.fields = fields;
+        this.changed = changed;
+        this.indexes = indexes;
+        this.oldValues = oldValues;
+        this.newValues = newValues;
+    }
+
+    public Class<?> getType() {
+        return type;
+    }
+
+    public boolean isEmpty() {
+        return indexes.length == 0;
+    }
+
+    public int size() {
+        return indexes.length;
+    }
+
+    public boolean isChanged(int fieldIndex) {
+        return changed.get(fieldIndex);
+    }
+
+    public BitSet getChangedFields() {
+        return (BitSet) changed.clone();
+    }
+
+    /**
+     * Returns the changed fields as a bit mask; the class must have at most 64 fields.
+     */
+    public long getChangedFieldsMask() {
+        if (fields.length > Long.SIZE) {
+            throw new IllegalStateException(type.getName() + " has more than " + Long.SIZE + " fields");
+        }
+        return changed.isEmpty() ? 0 : changed.toLongArray()[0];
+    }
+
+    public int getFieldIndex(int i) {
+        return indexes[i];
+    }
+
+    public Field getField(int i) {
+        return fields[indexes[i]].getField();
+    }
+
+    @Nullable
+    public Object getOldValue(int i) {
+        return oldValues[i];
+    }
+
+    @Nullable
+    public Object getNewValue(int i) {
+        return newValues[i];
+    }
+
+    /* All the fields are checked first, so a failing patch doesn't leave the target half-written */
+    void apply(Object target) {
+        for (int index : indexes) {
+            Field field = fields[index].getField();
+            if (Modifier.isFinal(field.getModifiers())) {
+                throw new IllegalStateException("Can't apply a change of the final field " + field);
+            }
+        }
+        for (int i = 0; i < indexes.length; i++) {
+            fields[indexes[i]].set(target, newValues[i]);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.plusminus.util;
+
+import org.springframework.lang.Nullable;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dotted field path like {@code "order.customer.address.city"} compiled once into a chain of
+ * {@link FieldAccessor}s. Segments are resolved against the declared field types where possible
+ * and against the runtime class otherwise (e.g. for interface-typed fields).
+ *
+ * @author Taras Shpek
+ */
+public final class FieldPath {
+
+    private static final Map<Class<?>, Map<String, FieldPath>> PATHS = new ConcurrentHashMap<>();
+
+    private final String path;
+    private final Segment[] segments;
+
+    private FieldPath(Class<?> rootType, String path) {
+        this.path = path;
+        String[] names = path.split("\\.", -1);
+        this.segments = new Segment[names.length];
+        Class<?> ownerType = rootType;
+        for (int i = 0; i < names.length; i++) {
+            String name = names[i];
+            if (name.isEmpty()) {
+                throw new IllegalArgumentException("Invalid field path '" + path + "'");
+            }
+            Optional<Field> field = ownerType == null
+                    ? Optional.empty()
+                    : FieldUtils.findFirst(ownerType, f -> f.getName().equals(name));
+            segments[i] = new Segment(name, field.map(FieldAccessor::of).orElse(null));
+            ownerType = field.map(FieldPath::valueType).orElse(null);
+        }
+    }
+
+    public static FieldPath of(Class<?> rootType, String path) {
+        return PATHS.computeIfAbsent(rootType, key -> new ConcurrentHashMap<>())
+                .computeIfAbsent(path, key -> new FieldPath(rootType, key));
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Returns the value at the end of the path or {@code null} if any value on the way is {@code null}.
+     */
+    @Nullable
+    public Object read(Object root) {
+        Object current = root;
+        for (Segment segment : segments) {
+            if (current == null) {
+                return null;
+            }
+            current = segment.accessor(current).get(current);
+        }
+        return current;
+    }
+
+    @Nullable
+    public <V> V read(Object root, Class<V> valueType) {
+        Object value = read(root);
+        if (value == null) {
+            return null;
+        }
+        return valueType.cast(value);
+    }
+
+    /**
+     * Same as {@link #read(Object)}, but intermediate collections and arrays are fanned out,
+     * so the rest of the path is applied to each of their elements. Null values are skipped.
+     */
+    public List<Object> readAll(Object root) {
+        if (root == null) {
+            return Collections.emptyList();
+        }
+        List<Object> values = new ArrayList<>();
+        collect(root, 0, values);
+        return values;
+    }
+
+    /**
+     * Writes the value at the end of the path.
+     *
+     * @return {@code false} if the path could not be followed because of a {@code null} on the way
+     */
+    public boolean write(Object root, @Nullable Object value) {
+        Object current = root;
+        int last = segments.length - 1;
+        for (int i = 0; i < last; i++) {
+            if (current == null) {
+                return false;
+            }
+            current = segments[i].accessor(current).get(current);
+        }
+        if (current == null) {
+            return false;
+        }
+        segments[last].accessor(current).set(current, value);
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return path;
+    }
+
+    private void collect(@Nullable Object current, int index, List<Object> values) {
+        if (current == null) {
+            return;
+        }
+        if (index == segments.length) {
+            values.add(current);
+            return;
+        }
+        if (current instanceof Collection) {
+            for (Object element : (Collection<?>) current) {
+                collect(element, index, values);
+            }
+            return;
+        }
+        if (current instanceof Object[]) {
+            for (Object element : (Object[]) current) {
+                collect(element, index, values);
+            }
+            return;
+        }
+        Segment segment = segments[index];
+        collect(segment.accessor(current).get(current), index + 1, values);
+    }
+
+    @Nullable
+    private static Class<?> valueType(Field field) {
+        Class<?> type = field.getType();
+        if (type.isArray()) {
+            return type.getComponentType();
+        }
+        if (Collection.class.isAssignableFrom(type)) {
+            return FieldUtils.getGenericType(field);
+        }
+        return type;
+    }
+
+    private static final class Segment {
+
+        private final String name;
+        @Nullable
+        private final FieldAccessor accessor;
+        @Nullable
+        private volatile Resolved resolved;
+
+        private Segment(String name, @Nullable FieldAccessor accessor) {
+            this.name = name;
+            this.accessor = accessor;
+        }
+
+        /* Statically resolved accessors apply to any subclass of the declaring class.
+           Everything else goes through a one-entry cache keyed by the runtime class. */
+        private FieldAccessor accessor(Object target) {
+            Class<?> targetClass = target.getClass();
+            if (accessor != null && accessor.getField().getDeclaringClass().isAssignableFrom(targetClass)) {
+                return accessor;
+            }
+            Resolved current = resolved;
+            if (current != null && current.type == targetClass) {
+                return current.accessor;
+            }
+            FieldAccessor fieldAccessor = FieldAccessor.of(targetClass, name);
+            resolved = new Resolved(targetClass, fieldAccessor);
+            return fieldAccessor;
+        }
+    }
+
+    private static final class Resolved {
+
+        private final Class<?> type;
+        private final FieldAccessor accessor;
+
+        private Resolved(Class<?> type, FieldAccessor accessor) {
+            this.type = type;
+            this.accessor = accessor;
+        }
+    }
+}
@@ -18,23 +18,38 @@ package software.plusminus.util;
 import lombok.experimental.UtilityClass;
 import org.springframework.core.ResolvableType;
 import org.springframework.lang.Nullable;
-import org.springframework.util.ReflectionUtils;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.RandomAccess;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 @UtilityClass
 public class FieldUtils {
 
+    private static final Map<Class<?>, FieldIndex> FIELD_INDEXES = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, FieldAccessor[]> INSTANCE_FIELDS = new ConcurrentHashMap<>();
+    private static final Object[] NO_VALUES = new Object[0];
+    private static final int[] NO_INDEXES = new int[0];
+
     @Nullable
     public <O> Object read(O object, Field field) {
         return read(object, Object.class, field);
@@ -42,14 +57,29 @@ public class FieldUtils {
 
     @Nullable
     public <O, V> V read(O object, Class<V> valueType, Field field) {
-        ReflectionUtils.makeAccessible(field);
-        Object value = ReflectionUtils.getField(field, object);
+        Object value = FieldAccessor.of(field).get(object);
         if (value == null) {
             return null;
         }
         return valueType.cast(value);
     }
 
+    public <O> int readInt(O object, Field field) {
+        return FieldAccessor.of(field).getInt(object);
+    }
+
+    public <O> long readLong(O object, Field field) {
+        return FieldAccessor.of(field).getLong(object);
+    }
+
+    public <O> double readDouble(O object, Field field) {
+        return FieldAccessor.of(field).getDouble(object);
+    }
+
+    public <O> boolean readBoolean(O object, Field field) {
+        return FieldAccessor.of(field).getBoolean(object);
+    }
+
     @Nullable
     public <O, V> V readFirst(O object, Class<V> valueType, Predicate<Field> predicate) {
         return findFirst(object.getClass(), predicate)
@@ -72,8 +102,23 @@ public class FieldUtils {
     }
 
     public <O, V> void write(O object, V value, Field field) {
-        ReflectionUtils.makeAccessible(field);
-        ReflectionUtils.setField(field, object, value);
+        FieldAccessor.of(field).set(object, value);
+    }
+
+    public <O> void writeInt(O object, int value, Field field) {
+        FieldAccessor.of(field).setInt(object, value);
+    }
+
+    public <O> void writeLong(O object, long value, Field field) {
+        FieldAccessor.of(field).setLong(object, value);
+    }
+
+    public <O> void writeDouble(O object, double value, Field field) {
+        FieldAccessor.of(field).setDouble(object, value);
+    }
+
+    public <O> void writeBoolean(O object, boolean value, Field field) {
+        FieldAccessor.of(field).setBoolean(object, value);
     }
 
     public <O, V> void writeFirstWithType(O object, V value) {
@@ -86,6 +131,121 @@ public class FieldUtils {
                 .ifPresent(field -> write(object, value, field));
     }
 
+    public <O> int[] readIntColumn(List<O> objects, Field field) {
+        return readIntColumn(objects, field, false);
+    }
+
+    public <O> int[] readIntColumn(List<O> objects, Field field, boolean parallel) {
+        FieldAccessor accessor = FieldAccessor.of(field);
+        return readIntColumn(objects, object -> accessor, parallel);
+    }
+
+    public <O> int[] readIntColumn(List<O> objects, String fieldName) {
+        return readIntColumn(objects, fieldName, false);
+    }
+
+    public <O> int[] readIntColumn(List<O> objects, String fieldName, boolean parallel) {
+        return readIntColumn(objects, object -> FieldAccessor.of(object.getClass(), fieldName), parallel);
+    }
+
+    public <O> long[] readLongColumn(List<O> objects, Field field) {
+        return readLongColumn(objects, field, false);
+    }
+
+    public <O> long[] readLongColumn(List<O> objects, Field field, boolean parallel) {
+        FieldAccessor accessor = FieldAccessor.of(field);
+        return readLongColumn(objects, object -> accessor, parallel);
+    }
+
+    public <O> long[] readLongColumn(List<O> objects, String fieldName) {
+        return readLongColumn(objects, fieldName, false);
+    }
+
+    public <O> long[] readLongColumn(List<O> objects, String fieldName, boolean parallel) {
+        return readLongColumn(objects, object -> FieldAccessor.of(object.getClass(), fieldName), parallel);
+    }
+
+    public <O> double[] readDoubleColumn(List<O> objects, Field field) {
+        return readDoubleColumn(objects, field, false);
+    }
+
+    public <O> double[] readDoubleColumn(List<O> objects, Field field, boolean parallel) {
+        FieldAccessor accessor = FieldAccessor.of(field);
+        return readDoubleColumn(objects, object -> accessor, parallel);
+    }
+
+    public <O> double[] readDoubleColumn(List<O> objects, String fieldName) {
+        return readDoubleColumn(objects, fieldName, false);
+    }
+
+    public <O> double[] readDoubleColumn(List<O> objects, String fieldName, boolean parallel) {
+        return readDoubleColumn(objects, object -> FieldAccessor.of(object.getClass(), fieldName), parallel);
+    }
+
+    public <O> Object[] readColumn(List<O> objects, Field field) {
+        return readColumn(objects, field, false);
+    }
+
+    public <O> Object[] readColumn(List<O> objects, Field field, boolean parallel) {
+        FieldAccessor accessor = FieldAccessor.of(field);
+        return readColumn(objects, object -> accessor, parallel);
+    }
+
+    public <O> Object[] readColumn(List<O> objects, String fieldName) {
+        return readColumn(objects, fieldName, false);
+    }
+
+    public <O> Object[] readColumn(List<O> objects, String fieldName, boolean parallel) {
+        return readColumn(objects, object -> FieldAccessor.of(object.getClass(), fieldName), parallel);
+    }
+
+    /**
+     * Compares the non-static fields of two instances of the same class. Primitive fields are compared
+     * without boxing, others with {@code equals}; only the values of changed fields are kept in the patch.
+     */
+    public <O> FieldPatch diff(O before, O after) {
+        Class<?> type = before.getClass();
+        if (after.getClass() != type) {
+            throw new IllegalArgumentException("Can't diff " + type.getName() + " with " + after.getClass().getName());
+        }
+        FieldAccessor[] fields = INSTANCE_FIELDS.computeIfAbsent(type, c -> getAccessors(c,
+                field -> !Modifier.isStatic(field.getModifiers())));
+        BitSet changed = new BitSet(fields.length);
+        for (int i = 0; i < fields.length; i++) {
+            if (!isSameValue(fields[i], before, after)) {
+                changed.set(i);
+            }
+        }
+        int count = changed.cardinality();
+        if (count == 0) {
+            return new FieldPatch(type, fields, changed, NO_INDEXES, NO_VALUES, NO_VALUES);
+        }
+        int[] indexes = new int[count];
+        Object[] oldValues = new Object[count];
+        Object[] newValues = new Object[count];
+        int i = 0;
+        for (int index = changed.nextSetBit(0); index >= 0; index = changed.nextSetBit(index + 1)) {
+            indexes[i] = index;
+            oldValues[i] = fields[index].get(before);
+            newValues[i] = fields[index].get(after);
+            i++;
+        }
+        return new FieldPatch(type, fields, changed, indexes, oldValues, newValues);
+    }
+
+    /**
+     * Writes the new values of the patch to the target, which must be an instance of the patched class.
+     *
+     * @throws IllegalStateException if a changed field is final; nothing is written then
+     */
+    public <O> void apply(FieldPatch patch, O target) {
+        if (!patch.getType().isInstance(target)) {
+            throw new IllegalArgumentException("Can't apply a patch of " + patch.getType().getName()
+                    + " to " + target.getClass().getName());
+        }
+        patch.apply(target);
+    }
+
     public <C> Optional<Field> findFirst(Class<C> clazz, Predicate<Field> predicate) {
         return getFieldsStream(clazz)
                 .filter(predicate)
@@ -93,36 +253,200 @@ public class FieldUtils {
     }
 
     public <C, F> Optional<Field> findFirstWithType(Class<C> clazz, Class<F> fieldType) {
-        return findFirst(clazz, field -> field.getType() == fieldType);
+        return FIELD_INDEXES.computeIfAbsent(clazz, FieldIndex::new).byType
+                .getOrDefault(fieldType, Optional.empty());
     }
 
     public <C> Optional<Field> findFirstWithAnnotation(Class<C> clazz, Class<? extends Annotation> annotationType) {
-        return findFirst(clazz, field -> field.isAnnotationPresent(annotationType));
+        return FIELD_INDEXES.computeIfAbsent(clazz, FieldIndex::new).byAnnotation
+                .getOrDefault(annotationType, Optional.empty());
     }
 
     @SuppressWarnings("squid:S1452")
     public <T> Set<?> getDeepFieldValues(T object, Predicate<Field> fieldPredicate) {
-        Set<Object> values = new HashSet<>();
-        addFieldValuesDeep(values, object, fieldPredicate);
-        return values;
+        return getDeepFieldValues(object, fieldPredicate, Integer.MAX_VALUE, Integer.MAX_VALUE, false);
     }
 
-    private void addFieldValuesDeep(Set<Object> values, Object object, Predicate<Field> fieldPredicate) {
-        List<Object> newValues = new ArrayList<>();
-        getFieldsStream(object.getClass())
-                .filter(fieldPredicate)
-                .map(field -> read(object, Object.class, field))
-                .filter(Objects::nonNull)
-                .flatMap(value -> value instanceof Collection
-                        ? ((Collection<?>) value).stream()
-                        : Stream.of(value))
-                .filter(Objects::nonNull)
-                .forEach(value -> {
+    /**
+     * Collects the values of the fields matching the predicate, then the values of their fields and so on.
+     * Values are compared by identity and elements of collection values are collected instead of collections.
+     * The traversal stops at {@code maxDepth} levels below the object or after {@code maxNodes} values.
+     */
+    @SuppressWarnings("squid:S1452")
+    public <T> Set<?> getDeepFieldValues(T object, Predicate<Field> fieldPredicate,
+                                         int maxDepth, int maxNodes, boolean parallel) {
+        if (parallel) {
+            return getDeepFieldValuesParallel(object, fieldPredicate, maxDepth, maxNodes);
+        }
+        Set<Object> values = Collections.newSetFromMap(new IdentityHashMap<>());
+        Map<Class<?>, FieldAccessor[]> accessors = new IdentityHashMap<>();
+        List<Object> level = Collections.singletonList(object);
+        for (int depth = 1; depth <= maxDepth && !level.isEmpty(); depth++) {
+            List<Object> nextLevel = new ArrayList<>();
+            for (Object node : level) {
+                FieldAccessor[] nodeAccessors = accessors.computeIfAbsent(node.getClass(),
+                        c -> getAccessors(c, fieldPredicate));
+                boolean withinBudget = forEachFieldValue(node, nodeAccessors, value -> {
+                    if (values.size() >= maxNodes) {
+                        return false;
+                    }
                     if (values.add(value)) {
-                        newValues.add(value);
+                        nextLevel.add(value);
                     }
+                    return true;
                 });
-        newValues.forEach(value -> addFieldValuesDeep(values, value, fieldPredicate));
+                if (!withinBudget) {
+                    return values;
+                }
+            }
+            level = nextLevel;
+        }
+        return values;
+    }
+
+    private <O> int[] readIntColumn(List<O> objects, Function<Object, FieldAccessor> accessors, boolean parallel) {
+        List<O> elements = toRandomAccess(objects);
+        int[] column = new int[elements.size()];
+        indexes(column.length, parallel).forEach(i -> {
+            Object object = elements.get(i);
+            if (object != null) {
+                column[i] = accessors.apply(object).getInt(object);
+            }
+        });
+        return column;
+    }
+
+    private <O> long[] readLongColumn(List<O> objects, Function<Object, FieldAccessor> accessors, boolean parallel) {
+        List<O> elements = toRandomAccess(objects);
+        long[] column = new long[elements.size()];
+        indexes(column.length, parallel).forEach(i -> {
+            Object object = elements.get(i);
+            if (object != null) {
+                column[i] = accessors.apply(object).getLong(object);
+            }
+        });
+        return column;
+    }
+
+    private <O> double[] readDoubleColumn(List<O> objects, Function<Object, FieldAccessor> accessors,
+                                          boolean parallel) {
+        List<O> elements = toRandomAccess(objects);
+        double[] column = new double[elements.size()];
+        indexes(column.length, parallel).forEach(i -> {
+            Object object = elements.get(i);
+            if (object != null) {
+                column[i] = accessors.apply(object).getDouble(object);
+            }
+        });
+        return column;
+    }
+
+    private <O> Object[] readColumn(List<O> objects, Function<Object, FieldAccessor> accessors, boolean parallel) {
+        List<O> elements = toRandomAccess(objects);
+        Object[] column = new Object[elements.size()];
+        indexes(column.length, parallel).forEach(i -> {
+            Object object = elements.get(i);
+            if (object != null) {
+                column[i] = accessors.apply(object).get(object);
+            }
+        });
+        return column;
+    }
+
+    /* Parallel streams split the index range across the common fork-join pool;
+       each task writes only its own slots of the column array. */
+    private IntStream indexes(int size, boolean parallel) {
+        IntStream indexes = IntStream.range(0, size);
+        return parallel ? indexes.parallel() : indexes;
+    }
+
+    private <O> List<O> toRandomAccess(List<O> objects) {
+        if (objects instanceof RandomAccess) {
+            return objects;
+        }
+        return new ArrayList<>(objects);
+    }
+
+    /* Each level of the graph is split across the common fork-join pool. Only newly added values
+       take from the node budget, and a value which finds the budget exhausted is removed again,
+       so the result holds exactly min(maxNodes, reachable values), like the sequential traversal. */
+    private <T> Set<?> getDeepFieldValuesParallel(T object, Predicate<Field> fieldPredicate,
+                                                  int maxDepth, int maxNodes) {
+        Set<Object> values = new ConcurrentIdentitySet<>();
+        AtomicInteger budget = new AtomicInteger(maxNodes);
+        Map<Class<?>, FieldAccessor[]> accessors = new ConcurrentHashMap<>();
+        List<Object> level = Collections.singletonList(object);
+        for (int depth = 1; depth <= maxDepth && !level.isEmpty() && budget.get() > 0; depth++) {
+            level = level.parallelStream()
+                    .flatMap(node -> {
+                        FieldAccessor[] nodeAccessors = accessors.computeIfAbsent(node.getClass(),
+                                c -> getAccessors(c, fieldPredicate));
+                        List<Object> found = new ArrayList<>();
+                        forEachFieldValue(node, nodeAccessors, value -> {
+                            if (!values.add(value)) {
+                                return true;
+                            }
+                            if (!takeFromBudget(budget)) {
+                                values.remove(value);
+                                return false;
+                            }
+                            found.add(value);
+                            return true;
+                        });
+                        return found.stream();
+                    })
+                    .collect(Collectors.toList());
+        }
+        return values;
+    }
+
+    private boolean takeFromBudget(AtomicInteger budget) {
+        int left;
+        do {
+            left = budget.get();
+            if (left <= 0) {
+                return false;
+            }
+        } while (!budget.compareAndSet(left, left - 1));
+        return true;
+    }
+
+    private FieldAccessor[] getAccessors(Class<?> clazz, Predicate<Field> fieldPredicate) {
+        return getFieldsStream(clazz)
+                .filter(fieldPredicate)
+                .map(FieldAccessor::of)
+                .toArray(FieldAccessor[]::new);
+    }
+
+    private boolean isSameValue(FieldAccessor field, Object before, Object after) {
+        Class<?> type = field.getField().getType();
+        if (type == boolean.class) {
+            return field.getBoolean(before) == field.getBoolean(after);
+        }
+        if (type == double.class || type == float.class) {
+            return Double.doubleToLongBits(field.getDouble(before)) == Double.doubleToLongBits(field.getDouble(after));
+        }
+        if (type.isPrimitive()) {
+            return field.getLong(before) == field.getLong(after);
+        }
+        return Objects.equals(field.get(before), field.get(after));
+    }
+
+    /* Returns false as soon as the consumer refuses a value */
+    private boolean forEachFieldValue(Object node, FieldAccessor[] accessors, Predicate<Object> consumer) {
+        for (FieldAccessor accessor : accessors) {
+            Object value = accessor.get(node);
+            if (value instanceof Collection) {
+                for (Object element : (Collection<?>) value) {
+                    if (element != null && !consumer.test(element)) {
+                        return false;
+                    }
+                }
+            } else if (value != null && !consumer.test(value)) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /* Had to suppress PMD.CloseResource due to possible false positive bug 
@@ -143,4 +467,21 @@ public class FieldUtils {
         ResolvableType resolvableType = ResolvableType.forField(field);
         return resolvableType.getGeneric().getRawClass();
     }
+
+    /* Indexes the first field of every type and annotation type in one pass over the hierarchy,
+       so both hits and misses are answered by a single map lookup. */
+    private static final class FieldIndex {
+
+        private final Map<Class<?>, Optional<Field>> byType = new HashMap<>();
+        private final Map<Class<? extends Annotation>, Optional<Field>> byAnnotation = new HashMap<>();
+
+        private FieldIndex(Class<?> clazz) {
+            FieldUtils.getFieldsStream(clazz).forEach(field -> {
+                byType.putIfAbsent(field.getType(), Optional.of(field));
+                for (Annotation annotation : field.getDeclaredAnnotations()) {
+                    byAnnotation.putIfAbsent(annotation.annotationType(), Optional.of(field));
+                }
+            });
+        }
+    }
 }
\ No newline at end of file
@@ -20,13 +20,33 @@ import software.plusminus.util.exception.FileException;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 @UtilityClass
 public class FileUtils {
 
+    /* Heap buffer: the channel copies it through the per-thread direct buffer cached by the JDK */
+    private static final int ENCODE_BUFFER_SIZE = 64 * 1024;
+
     public void write(Path path, String content) {
         try {
             Path parent = path.getParent();
@@ -39,6 +59,42 @@ public class FileUtils {
         }
     }
 
+    /**
+     * Writes the content atomically: it is written to a temporary file in the same directory,
+     * forced to the storage device as requested by the durability and then moved over the target,
+     * so readers and crashes see either the old or the new content, never a truncated file.
+     * The POSIX permissions of the target are kept, its owner and other attributes are not.
+     * Large content is encoded through a fixed-size buffer instead of a full byte array copy.
+     */
+    public void write(Path path, String content, Durability durability) {
+        Path directory = path.toAbsolutePath().getParent();
+        Path temp = directory.resolve("." + path.getFileName() + "."
+                + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+        boolean moved = false;
+        try {
+            Files.createDirectories(directory);
+            try (FileChannel channel = FileChannel.open(temp,
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                writeUtf8(channel, content);
+                if (durability != Durability.NONE) {
+                    channel.force(false);
+                }
+            }
+            copyPermissions(path, temp);
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            moved = true;
+            if (durability == Durability.DATA_AND_DIRECTORY) {
+                forceDirectory(directory);
+            }
+        } catch (IOException e) {
+            throw new FileException(e);
+        } finally {
+            if (!moved) {
+                deleteTemp(temp);
+            }
+        }
+    }
+
     public String readString(Path path) {
         try {
             byte[] bytes = Files.readAllBytes(path);
@@ -51,4 +107,136 @@ public class FileUtils {
     public boolean exists(Path path) {
         return path.toFile().exists();
     }
+
+    /**
+     * Maps the file into memory as a read-only buffer, so its content is paged in by the OS
+     * instead of being copied to the heap. Files over 2 GB have to be mapped with {@link #mapChunks(Path, int)}.
+     */
+    public ByteBuffer map(Path path) {
+        long size;
+        try {
+            size = Files.size(path);
+        } catch (IOException e) {
+            throw new FileException(e);
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new FileException("File " + path + " of " + size + " bytes is too large to be mapped"
+                    + " into a single buffer, map it in chunks instead");
+        }
+        List<ByteBuffer> chunks = new MappedFile(path, Integer.MAX_VALUE).chunks();
+        return chunks.isEmpty() ? ByteBuffer.allocate(0).asReadOnlyBuffer() : chunks.get(0);
+    }
+
+    /**
+     * Maps the file into memory as consecutive read-only buffers of {@code chunkSize} bytes (the last one may be shorter).
+     */
+    public List<ByteBuffer> mapChunks(Path path, int chunkSize) {
+        return new MappedFile(path, chunkSize).chunks();
+    }
+
+    /**
+     * Returns the UTF-8 content of the mapped file as a {@link CharSequence} which decodes
+     * only the block of the file holding the requested characters, e.g. for regex matching
+     * over large files. The returned sequence is not thread-safe.
+     */
+    public CharSequence mapText(Path path) {
+        return new MappedText(new MappedFile(path, MappedFile.DEFAULT_CHUNK_SIZE));
+    }
+
+    /**
+     * Returns the UTF-8 lines of the mapped file, decoding each line only when it is consumed.
+     * Lines are terminated by {@code \n} or {@code \r\n}.
+     */
+    public Stream<String> lines(Path path) {
+        MappedFile file = new MappedFile(path, MappedFile.DEFAULT_CHUNK_SIZE);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(file.lines(),
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    private void writeUtf8(FileChannel channel, String content) throws IOException {
+        if (content.length() <= ENCODE_BUFFER_SIZE / 4) {
+            writeFully(channel, ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8)));
+            return;
+        }
+        CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        CharBuffer chars = CharBuffer.wrap(content);
+        ByteBuffer buffer = ByteBuffer.allocate(ENCODE_BUFFER_SIZE);
+        CoderResult result;
+        do {
+            result = encoder.encode(chars, buffer, true);
+            buffer.flip();
+            writeFully(channel, buffer);
+            buffer.clear();
+        } while (result.isOverflow());
+        while (encoder.flush(buffer).isOverflow()) {
+            buffer.flip();
+            writeFully(channel, buffer);
+            buffer.clear();
+        }
+        buffer.flip();
+        writeFully(channel, buffer);
+    }
+
+    /* Without it the replaced file would get the default permissions of a new file */
+    private void copyPermissions(Path target, Path temp) throws IOException {
+        if (!temp.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            return;
+        }
+        Set<PosixFilePermission> permissions;
+        try {
+            permissions = Files.getPosixFilePermissions(target);
+        } catch (NoSuchFileException e) {
+            return;
+        }
+        Files.setPosixFilePermissions(temp, permissions);
+    }
+
+    /* Runs while another exception propagates, which a failed deletion must not replace */
+    private void deleteTemp(Path temp) {
+        try {
+            Files.deleteIfExists(temp);
+        } catch (IOException e) {
+            /* The hidden temporary file is left behind */
+        }
+    }
+
+    private void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /* Makes the rename durable. Directories can't be opened on some platforms, e.g. Windows,
+       where the rename is durable once the file system journal is flushed. */
+    private void forceDirectory(Path directory) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (IOException e) {
+            return;
+        }
+        try (FileChannel opened = channel) {
+            opened.force(true);
+        }
+    }
+
+    /**
+     * How far {@link #write(Path, String, Durability)} waits for the content to reach the storage device.
+     */
+    public enum Durability {
+        /**
+         * The content is left to the OS page cache; it survives a process crash, but not a power loss.
+         */
+        NONE,
+        /**
+         * The content of the file is forced to the storage device before it replaces the target.
+         */
+        DATA,
+        /**
+         * Like {@link #DATA}, and the directory is forced as well, so the replacement itself survives a power loss.
+         */
+        DATA_AND_DIRECTORY
+    }
 }
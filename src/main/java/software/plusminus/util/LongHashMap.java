@@ -0,0 +1,112 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.plusminus.util;
+
+import org.springframework.lang.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Map from {@code long} keys to objects without boxing the keys,
+ * using open addressing with linear probing like {@link LongHashSet}. Not thread-safe.
+ *
+ * @author Taras Shpek
+ */
+public final class LongHashMap<V> {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private final LongHashTable table;
+
+    public LongHashMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public LongHashMap(int expectedSize) {
+        table = new LongHashTable(expectedSize, true);
+    }
+
+    public int size() {
+        return table.size();
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public boolean containsKey(long key) {
+        return table.containsKey(key);
+    }
+
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        return (V) table.get(key);
+    }
+
+    /**
+     * @return the previous value of the key
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public V put(long key, @Nullable V value) {
+        Object previous = table.put(key, value);
+        return previous == LongHashTable.ABSENT ? null : (V) previous;
+    }
+
+    /**
+     * @return the removed value of the key
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        Object previous = table.remove(key);
+        return previous == LongHashTable.ABSENT ? null : (V) previous;
+    }
+
+    public void clear() {
+        table.clear();
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEach(EntryConsumer<? super V> action) {
+        table.forEach((key, value) -> action.accept(key, (V) value));
+    }
+
+    public List<V> values() {
+        List<V> result = new ArrayList<>(size());
+        forEach((key, value) -> result.add(value));
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("{");
+        forEach((key, value) -> {
+            if (builder.length() > 1) {
+                builder.append(", ");
+            }
+            builder.append(key).append('=').append(value);
+        });
+        return builder.append('}').toString();
+    }
+
+    @FunctionalInterface
+    public interface EntryConsumer<V> {
+        void accept(long key, V value);
+    }
+}
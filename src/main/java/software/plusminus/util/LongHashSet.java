@@ -0,0 +1,103 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.plusminus.util;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Set of {@code long} values without boxing, using open addressing with linear probing.
+ * Not thread-safe.
+ *
+ * @author Taras Shpek
+ */
+public final class LongHashSet {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private final LongHashTable table;
+
+    public LongHashSet() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public LongHashSet(int expectedSize) {
+        table = new LongHashTable(expectedSize, false);
+    }
+
+    public int size() {
+        return table.size();
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public boolean contains(long value) {
+        return table.containsKey(value);
+    }
+
+    /**
+     * @return {@code true} if the value was not in the set
+     */
+    public boolean add(long value) {
+        return table.put(value, null) == LongHashTable.ABSENT;
+    }
+
+    public void addAll(long[] values) {
+        for (long value : values) {
+            add(value);
+        }
+    }
+
+    /**
+     * @return {@code true} if the value was in the set
+     */
+    public boolean remove(long value) {
+        return table.remove(value) != LongHashTable.ABSENT;
+    }
+
+    public void clear() {
+        table.clear();
+    }
+
+    public void forEach(LongConsumer action) {
+        table.forEachKey(action);
+    }
+
+    public long[] toArray() {
+        return table.keys();
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        if (!(object instanceof LongHashSet)) {
+            return false;
+        }
+        LongHashSet other = (LongHashSet) object;
+        return other.size() == size() && table.keysIn(other.table);
+    }
+
+    @Override
+    public int hashCode() {
+        return table.keysHashCode();
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+}
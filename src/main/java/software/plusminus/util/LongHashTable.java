@@ -0,0 +1,261 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.plusminus.util;
+
+import org.springframework.lang.Nullable;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Open-addressing table of {@code long} keys with linear probing, shared by {@link LongHashSet}
+ * and {@link LongHashMap}. The values are kept in a parallel array, which sets don't allocate.
+ * Not thread-safe.
+ *
+ * @author Taras Shpek
+ */
+final class LongHashTable {
+
+    /** Returned by {@link #put} and {@link #remove} if the key was not in the table. */
+    static final Object ABSENT = new Object();
+
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final long GOLDEN_RATIO = 0x9E3779B97F4A7C15L;
+
+    private final boolean withValues;
+    /* 0 marks a free slot, so the key 0 and its value are kept separately */
+    private long[] keys;
+    @Nullable
+    private Object[] values;
+    private int mask;
+    private int shift;
+    private int size;
+    private boolean containsZero;
+    @Nullable
+    private Object zeroValue;
+
+    LongHashTable(int expectedSize, boolean withValues) {
+        this.withValues = withValues;
+        int capacity = DEFAULT_CAPACITY;
+        while (capacity / 2 < expectedSize) {
+            capacity *= 2;
+        }
+        allocate(capacity);
+    }
+
+    int size() {
+        return containsZero ? size + 1 : size;
+    }
+
+    boolean containsKey(long key) {
+        return key == 0 ? containsZero : find(key) != -1;
+    }
+
+    @Nullable
+    Object get(long key) {
+        if (key == 0) {
+            return zeroValue;
+        }
+        int slot = find(key);
+        return slot == -1 || values == null ? null : values[slot];
+    }
+
+    /**
+     * @return the previous value of the key or {@link #ABSENT}
+     */
+    @Nullable
+    Object put(long key, @Nullable Object value) {
+        if (key == 0) {
+            Object previous = containsZero ? zeroValue : ABSENT;
+            containsZero = true;
+            zeroValue = value;
+            return previous;
+        }
+        int slot = slot(key);
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) {
+                return replace(slot, value);
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        if (values != null) {
+            values[slot] = value;
+        }
+        if (++size > keys.length / 2) {
+            rehash(keys.length * 2);
+        }
+        return ABSENT;
+    }
+
+    /**
+     * @return the removed value of the key or {@link #ABSENT}
+     */
+    @Nullable
+    Object remove(long key) {
+        if (key == 0) {
+            Object previous = containsZero ? zeroValue : ABSENT;
+            containsZero = false;
+            zeroValue = null;
+            return previous;
+        }
+        int slot = find(key);
+        if (slot == -1) {
+            return ABSENT;
+        }
+        Object previous = values == null ? null : values[slot];
+        keys[slot] = 0;
+        if (values != null) {
+            values[slot] = null;
+        }
+        size--;
+        shiftBack(slot);
+        return previous;
+    }
+
+    void clear() {
+        Arrays.fill(keys, 0);
+        if (values != null) {
+            Arrays.fill(values, null);
+        }
+        size = 0;
+        containsZero = false;
+        zeroValue = null;
+    }
+
+    void forEachKey(LongConsumer action) {
+        if (containsZero) {
+            action.accept(0);
+        }
+        for (long key : keys) {
+            if (key != 0) {
+                action.accept(key);
+            }
+        }
+    }
+
+    void forEach(LongHashMap.EntryConsumer<Object> action) {
+        if (containsZero) {
+            action.accept(0, zeroValue);
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                action.accept(keys[i], values == null ? null : values[i]);
+            }
+        }
+    }
+
+    long[] keys() {
+        long[] result = new long[size()];
+        int i = 0;
+        if (containsZero) {
+            result[i++] = 0;
+        }
+        for (long key : keys) {
+            if (key != 0) {
+                result[i++] = key;
+            }
+        }
+        return result;
+    }
+
+    /* Whether every key of the table is in the other one */
+    boolean keysIn(LongHashTable other) {
+        if (containsZero && !other.containsZero) {
+            return false;
+        }
+        for (long key : keys) {
+            if (key != 0 && !other.containsKey(key)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /* The key 0 doesn't change the hash, so it is skipped like the free slots */
+    int keysHashCode() {
+        int hash = 0;
+        for (long key : keys) {
+            hash += Long.hashCode(key);
+        }
+        return hash;
+    }
+
+    @Nullable
+    private Object replace(int slot, @Nullable Object value) {
+        if (values == null) {
+            return null;
+        }
+        Object previous = values[slot];
+        values[slot] = value;
+        return previous;
+    }
+
+    private int find(long key) {
+        for (int slot = slot(key); keys[slot] != 0; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /* Moves the following entries of the cluster back, so lookups don't stop at the freed slot */
+    private void shiftBack(int freed) {
+        int gap = freed;
+        for (int slot = (gap + 1) & mask; keys[slot] != 0; slot = (slot + 1) & mask) {
+            int home = slot(keys[slot]);
+            if (((slot - home) & mask) >= ((slot - gap) & mask)) {
+                keys[gap] = keys[slot];
+                keys[slot] = 0;
+                if (values != null) {
+                    values[gap] = values[slot];
+                    values[slot] = null;
+                }
+                gap = slot;
+            }
+        }
+    }
+
+    private int slot(long key) {
+        return (int) ((key * GOLDEN_RATIO) >>> shift);
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int slot = slot(oldKeys[i]);
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                if (values != null) {
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = withValues ? new Object[capacity] : null;
+        mask = capacity - 1;
+        shift = Long.SIZE - Integer.numberOfTrailingZeros(capacity);
+    }
+}
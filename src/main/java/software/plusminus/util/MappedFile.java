@@ -0,0 +1,148 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.plusminus.util;
+
+import software.plusminus.util.exception.FileException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * A file mapped into memory as read-only chunks, so files over 2 GB can be addressed by {@code long} positions.
+ * The channel is closed after mapping; the mappings stay valid until they are garbage collected.
+ */
+final class MappedFile {
+
+    static final int DEFAULT_CHUNK_SIZE = 1 << 30;
+
+    private final List<ByteBuffer> chunks;
+    private final int chunkSize;
+    private final long size;
+
+    MappedFile(Path path, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            size = channel.size();
+            List<ByteBuffer> mapped = new ArrayList<>((int) (size / chunkSize) + 1);
+            for (long position = 0; position < size; position += chunkSize) {
+                mapped.add(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(chunkSize, size - position)));
+            }
+            chunks = Collections.unmodifiableList(mapped);
+        } catch (IOException e) {
+            throw new FileException(e);
+        }
+    }
+
+    long size() {
+        return size;
+    }
+
+    /**
+     * Returns independent read-only views of the chunks.
+     */
+    List<ByteBuffer> chunks() {
+        List<ByteBuffer> views = new ArrayList<>(chunks.size());
+        for (ByteBuffer chunk : chunks) {
+            views.add(chunk.asReadOnlyBuffer());
+        }
+        return views;
+    }
+
+    byte get(long position) {
+        return chunks.get((int) (position / chunkSize)).get((int) (position % chunkSize));
+    }
+
+    /**
+     * Copies the bytes from {@code start} (inclusive) to {@code end} (exclusive), which may span chunks.
+     */
+    void copy(long start, long end, byte[] target, int offset) {
+        long position = start;
+        int targetOffset = offset;
+        while (position < end) {
+            ByteBuffer chunk = chunks.get((int) (position / chunkSize)).duplicate();
+            int chunkOffset = (int) (position % chunkSize);
+            int length = (int) Math.min(end - position, (long) chunk.limit() - chunkOffset);
+            chunk.position(chunkOffset);
+            chunk.get(target, targetOffset, length);
+            position += length;
+            targetOffset += length;
+        }
+    }
+
+    /**
+     * Returns the position of the first occurrence of the byte at or after {@code from}, or {@code -1}.
+     */
+    long indexOf(byte value, long from) {
+        int first = (int) (from / chunkSize);
+        for (int i = first; i < chunks.size(); i++) {
+            ByteBuffer chunk = chunks.get(i);
+            for (int j = i == first ? (int) (from % chunkSize) : 0; j < chunk.limit(); j++) {
+                if (chunk.get(j) == value) {
+                    return (long) i * chunkSize + j;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the UTF-8 lines of the file terminated by {@code \n} or {@code \r\n}, decoding each line as it is pulled.
+     */
+    Iterator<String> lines() {
+        return new LineIterator();
+    }
+
+    private final class LineIterator implements Iterator<String> {
+
+        private long position;
+
+        @Override
+        public boolean hasNext() {
+            return position < size;
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            long terminator = indexOf((byte) '\n', position);
+            long end = terminator == -1 ? size : terminator;
+            if (end > position && get(end - 1) == '\r') {
+                end--;
+            }
+            if (end - position > Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("Line at " + position + " is too long");
+            }
+            byte[] bytes = new byte[(int) (end - position)];
+            copy(position, end, bytes, 0);
+            position = terminator == -1 ? size : terminator + 1;
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.plusminus.util;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * UTF-8 text of a {@link MappedFile} decoded on demand. The file is split into blocks of bytes
+ * starting at character boundaries; a first pass counts the characters of every block,
+ * then {@link #charAt(int)} decodes only the block holding the character, caching the last one.
+ * Not thread-safe.
+ */
+final class MappedText implements CharSequence {
+
+    private static final int BLOCK_SIZE = 64 * 1024;
+    private static final int MAX_CONTINUATION_BYTES = 3;
+
+    private final MappedFile file;
+    private final long[] blockStarts;
+    private final int[] charStarts;
+    private final int length;
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final byte[] bytes = new byte[BLOCK_SIZE + MAX_CONTINUATION_BYTES];
+    private final CharBuffer chars = CharBuffer.allocate(BLOCK_SIZE + MAX_CONTINUATION_BYTES);
+    private int decodedBlock = -1;
+
+    MappedText(MappedFile file) {
+        this.file = file;
+        int blocks = (int) ((file.size() + BLOCK_SIZE - 1) / BLOCK_SIZE);
+        blockStarts = new long[blocks + 1];
+        charStarts = new int[blocks + 1];
+        for (int i = 1; i < blocks; i++) {
+            blockStarts[i] = boundary((long) i * BLOCK_SIZE);
+        }
+        blockStarts[blocks] = file.size();
+        long total = 0;
+        for (int i = 0; i < blocks; i++) {
+            charStarts[i] = (int) total;
+            total += decode(i);
+            if (total > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("File has more than " + Integer.MAX_VALUE + " characters");
+            }
+        }
+        charStarts[blocks] = (int) total;
+        length = (int) total;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", length: " + length);
+        }
+        int block = Arrays.binarySearch(charStarts, 0, charStarts.length - 1, index);
+        if (block < 0) {
+            block = -block - 2;
+        }
+        /* Empty blocks share their char start with the next one */
+        while (charStarts[block + 1] <= index) {
+            block++;
+        }
+        if (block != decodedBlock) {
+            decode(block);
+        }
+        return chars.get(index - charStarts[block]);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("Range: " + start + ".." + end + ", length: " + length);
+        }
+        StringBuilder builder = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            builder.append(charAt(i));
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public String toString() {
+        return subSequence(0, length).toString();
+    }
+
+    /* Moves the position forward to the first byte which is not a UTF-8 continuation byte.
+       A character has at most 3 of them, so longer runs are malformed and may be split,
+       which keeps every block within the buffers. */
+    private long boundary(long position) {
+        long result = position;
+        long limit = Math.min(file.size(), position + MAX_CONTINUATION_BYTES);
+        while (result < limit && (file.get(result) & 0xC0) == 0x80) {
+            result++;
+        }
+        return result;
+    }
+
+    private int decode(int block) {
+        int size = (int) (blockStarts[block + 1] - blockStarts[block]);
+        file.copy(blockStarts[block], blockStarts[block + 1], bytes, 0);
+        chars.clear();
+        decoder.reset();
+        CoderResult result = decoder.decode(ByteBuffer.wrap(bytes, 0, size), chars, true);
+        if (result.isUnderflow()) {
+            result = decoder.flush(chars);
+        }
+        if (!result.isUnderflow()) {
+            throw new IllegalStateException("Block " + block + " can't be decoded: " + result);
+        }
+        chars.flip();
+        decodedBlock = block;
+        return chars.remaining();
+    }
+}
@@ -0,0 +1,367 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.plusminus.util;
+
+import lombok.experimental.UtilityClass;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lazy depth-first traversal of object graphs.
+ * Every distinct (by identity) non-leaf object reachable from the root is visited once;
+ * leaves are JVM classes other than collections and maps, and enums (see {@link ReferencePlan}).
+ * The root has depth {@code 0}, and an object has the depth of its shortest path from the root:
+ * if a shorter path to an already traversed object is found, the children it newly brings within
+ * the depth limit are traversed as well.
+ *
+ * @author Taras Shpek
+ */
+@UtilityClass
+public class ObjectGraph {
+
+    public Stream<Object> stream(Object root) {
+        return stream(root, Integer.MAX_VALUE);
+    }
+
+    public Stream<Object> stream(Object root, int maxDepth) {
+        return StreamSupport.stream(spliterator(root, maxDepth), false);
+    }
+
+    public Spliterator<Object> spliterator(Object root, int maxDepth) {
+        return Spliterators.spliteratorUnknownSize(iterator(root, maxDepth),
+                Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.ORDERED);
+    }
+
+    /**
+     * Returns the reachable objects in depth-first pre-order, discovering them only as they are pulled.
+     */
+    public Iterator<Object> iterator(Object root, int maxDepth) {
+        Cursor cursor = new Cursor(root, maxDepth);
+        return new Iterator<Object>() {
+
+            private boolean ready;
+
+            @Override
+            public boolean hasNext() {
+                while (!ready && cursor.advance()) {
+                    ready = cursor.event == Event.ENTER;
+                }
+                return ready;
+            }
+
+            @Override
+            public Object next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                ready = false;
+                return cursor.object;
+            }
+        };
+    }
+
+    /**
+     * @return {@code false} if the visitor terminated the traversal
+     */
+    public boolean walk(Object root, Visitor visitor) {
+        return walk(root, Integer.MAX_VALUE, visitor);
+    }
+
+    /**
+     * @return {@code false} if the visitor terminated the traversal
+     */
+    public boolean walk(Object root, int maxDepth, Visitor visitor) {
+        Cursor cursor = new Cursor(root, maxDepth);
+        while (cursor.advance()) {
+            Visit visit;
+            switch (cursor.event) {
+                case ENTER:
+                    visit = visitor.enter(cursor.object, cursor.depth);
+                    if (visit == Visit.SKIP_CHILDREN) {
+                        cursor.skipChildren();
+                    }
+                    break;
+                case EXIT:
+                    visitor.exit(cursor.object, cursor.depth);
+                    visit = Visit.CONTINUE;
+                    break;
+                default:
+                    visit = visitor.revisit(cursor.object, cursor.onPath);
+                    break;
+            }
+            if (visit == Visit.TERMINATE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Collects the same objects as {@link #stream(Object)} using the common fork-join pool.
+     */
+    public Set<Object> collectParallel(Object root) {
+        return collectParallel(root, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Collects the same objects as {@link #stream(Object)}, traversing independent subgraphs
+     * on the threads of the pool. The graph must not be modified during the traversal.
+     * Whether it is faster than a sequential traversal depends on the shape of the graph
+     * and the number of cores, so it should be measured on the target machine.
+     */
+    public Set<Object> collectParallel(Object root, ForkJoinPool pool) {
+        Set<Object> visited = new ConcurrentIdentitySet<>();
+        if (root == null || ReferencePlan.of(root.getClass()).isLeaf()) {
+            return visited;
+        }
+        visited.add(root);
+        Deque<Object> stack = new ArrayDeque<>();
+        stack.push(root);
+        pool.invoke(new CollectTask(visited, stack));
+        return visited;
+    }
+
+    public enum Visit {
+        CONTINUE, SKIP_CHILDREN, TERMINATE
+    }
+
+    public interface Visitor {
+
+        /**
+         * Called when an object is reached for the first time.
+         */
+        default Visit enter(Object object, int depth) {
+            return Visit.CONTINUE;
+        }
+
+        /**
+         * Called after all the children of an entered object have been traversed or skipped.
+         */
+        default void exit(Object object, int depth) {
+        }
+
+        /**
+         * Called when an already entered object is reached again.
+         *
+         * @param onPath {@code true} if the object is being traversed, i.e. the reference closes a cycle
+         */
+        default Visit revisit(Object object, boolean onPath) {
+            return Visit.CONTINUE;
+        }
+    }
+
+    private enum Event {
+        ENTER, EXIT, REVISIT
+    }
+
+    /* Explicit-stack traversal advancing one event at a time. After ENTER the children
+       of the object are not read until the next advance, so they can still be skipped.
+       With a depth limit, an object revisited at a smaller depth than it was traversed at
+       is traversed again silently (without ENTER and EXIT), so children that were out of range
+       are reached; objects whose children were skipped by the visitor are never traversed again. */
+    private static final class Cursor {
+
+        private final Deque<Frame> stack = new ArrayDeque<>();
+        private final Map<Object, Boolean> onPaths = new IdentityHashMap<>();
+        private final Map<Object, Integer> depths = new IdentityHashMap<>();
+        private final int maxDepth;
+        private Object root;
+        private Object pending;
+        private ReferencePlan pendingPlan;
+        private boolean skip;
+        private Object retraversed;
+        private ReferencePlan retraversedPlan;
+        private int retraversedDepth;
+
+        private Event event;
+        private Object object;
+        private int depth;
+        private boolean onPath;
+
+        private Cursor(Object root, int maxDepth) {
+            this.root = root;
+            this.maxDepth = maxDepth;
+        }
+
+        private void skipChildren() {
+            skip = true;
+        }
+
+        private boolean advance() {
+            if (root != null) {
+                Object entered = root;
+                root = null;
+                ReferencePlan plan = ReferencePlan.of(entered.getClass());
+                if (plan.isLeaf()) {
+                    return false;
+                }
+                enter(entered, plan, 0);
+                return true;
+            }
+            if (pending != null) {
+                Object entered = pending;
+                pending = null;
+                if (skip) {
+                    depths.put(entered, Integer.MIN_VALUE);
+                    exit(entered, depth);
+                    return true;
+                }
+                stack.push(new Frame(entered, depth, pendingPlan.children(entered), false));
+            }
+            if (retraversed != null) {
+                Object object = retraversed;
+                retraversed = null;
+                depths.put(object, retraversedDepth);
+                onPaths.put(object, Boolean.TRUE);
+                stack.push(new Frame(object, retraversedDepth, retraversedPlan.children(object), true));
+            }
+            while (!stack.isEmpty()) {
+                Frame frame = stack.peek();
+                if (!frame.children.hasNext()) {
+                    stack.pop();
+                    if (frame.silent) {
+                        onPaths.put(frame.object, Boolean.FALSE);
+                        continue;
+                    }
+                    exit(frame.object, frame.depth);
+                    return true;
+                }
+                Object child = frame.children.next();
+                if (child == null) {
+                    continue;
+                }
+                ReferencePlan plan = ReferencePlan.of(child.getClass());
+                if (plan.isLeaf()) {
+                    continue;
+                }
+                Boolean childOnPath = onPaths.get(child);
+                if (childOnPath != null) {
+                    event = Event.REVISIT;
+                    object = child;
+                    onPath = childOnPath;
+                    if (!childOnPath && maxDepth != Integer.MAX_VALUE && frame.depth + 1 < depths.get(child)) {
+                        retraversed = child;
+                        retraversedPlan = plan;
+                        retraversedDepth = frame.depth + 1;
+                    }
+                    return true;
+                }
+                if (frame.depth < maxDepth) {
+                    enter(child, plan, frame.depth + 1);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void enter(Object entered, ReferencePlan plan, int enteredDepth) {
+            onPaths.put(entered, Boolean.TRUE);
+            depths.put(entered, enteredDepth);
+            event = Event.ENTER;
+            object = entered;
+            depth = enteredDepth;
+            pending = entered;
+            pendingPlan = plan;
+            skip = false;
+        }
+
+        private void exit(Object exited, int exitedDepth) {
+            onPaths.put(exited, Boolean.FALSE);
+            event = Event.EXIT;
+            object = exited;
+            depth = exitedDepth;
+        }
+    }
+
+    /* Every task runs a depth-first traversal on its own stack. While other workers are idle
+       (few queued tasks), the bottom half of the stack, which holds the largest pending subgraphs,
+       is forked as a new task to be stolen. Objects are claimed in the shared visited set
+       before being pushed, so each one is traversed by exactly one task.
+       The surplus of 3 queued tasks is the steady state suggested by the documentation of
+       ForkJoinTask.getSurplusQueuedTaskCount; it is not tuned for this traversal. */
+    private static final class CollectTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        private static final int SURPLUS_TASKS = 3;
+
+        private final transient Set<Object> visited;
+        private final transient Deque<Object> stack;
+
+        private CollectTask(Set<Object> visited, Deque<Object> stack) {
+            this.visited = visited;
+            this.stack = stack;
+        }
+
+        @Override
+        protected void compute() {
+            List<CollectTask> forked = new ArrayList<>();
+            while (!stack.isEmpty()) {
+                if (stack.size() > 1 && getSurplusQueuedTaskCount() <= SURPLUS_TASKS) {
+                    forked.add((CollectTask) new CollectTask(visited, splitStack()).fork());
+                }
+                Object object = stack.pop();
+                Iterator<?> children = ReferencePlan.of(object.getClass()).children(object);
+                while (children.hasNext()) {
+                    Object child = children.next();
+                    if (child != null && !ReferencePlan.of(child.getClass()).isLeaf() && visited.add(child)) {
+                        stack.push(child);
+                    }
+                }
+            }
+            for (CollectTask task : forked) {
+                task.join();
+            }
+        }
+
+        private Deque<Object> splitStack() {
+            int half = stack.size() / 2;
+            Deque<Object> split = new ArrayDeque<>(half);
+            for (int i = 0; i < half; i++) {
+                split.push(stack.pollLast());
+            }
+            return split;
+        }
+    }
+
+    private static final class Frame {
+
+        private final Object object;
+        private final int depth;
+        private final Iterator<?> children;
+        private final boolean silent;
+
+        private Frame(Object object, int depth, Iterator<?> children, boolean silent) {
+            this.object = object;
+            this.depth = depth;
+            this.children = children;
+            this.silent = silent;
+        }
+    }
+}
@@ -0,0 +1,335 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.plusminus.util;
+
+import lombok.experimental.UtilityClass;
+import org.springframework.lang.Nullable;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Estimates the memory occupied by objects on a 64-bit HotSpot JVM.
+ * Shallow sizes are computed from the field layout of each class, which is cached.
+ * Deep sizes sum the shallow sizes of every distinct (by identity) reachable object.
+ * Objects of JVM classes are not introspected: strings are estimated from their length,
+ * collections and maps as array lists and hash maps of their size, and other JVM objects
+ * by their shallow size only. Enum constants are shared and not counted.
+ *
+ * @author Taras Shpek
+ */
+@UtilityClass
+public class ObjectSize {
+
+    /** Collections, maps and arrays with more elements are sampled by default. */
+    public static final int DEFAULT_SAMPLE_SIZE = 1000;
+
+    private static final long GIGABYTE = 1024L * 1024 * 1024;
+    /* Compressed oops are enabled by default for heaps below 32 GB */
+    private static final boolean COMPRESSED = Runtime.getRuntime().maxMemory() < 32 * GIGABYTE;
+    private static final int REFERENCE = COMPRESSED ? 4 : 8;
+    private static final int HEADER = COMPRESSED ? 12 : 16;
+    private static final int ARRAY_HEADER = COMPRESSED ? 16 : 24;
+    /* Since Java 9 strings of Latin-1 characters take one byte per character */
+    private static final boolean COMPACT_STRINGS = !System.getProperty("java.specification.version").startsWith("1.");
+    private static final long HASH_NODE = align(HEADER + 4 + 3L * REFERENCE);
+
+    private static final Map<Class<?>, Layout> LAYOUTS = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the size of the object itself, not including the objects it references.
+     */
+    public long shallowSize(Object object) {
+        Class<?> type = object.getClass();
+        if (type.isArray()) {
+            return arraySize(type.getComponentType(), Array.getLength(object));
+        }
+        return layout(type).size;
+    }
+
+    public long deepSize(Object object) {
+        return deepSize(object, DEFAULT_SAMPLE_SIZE);
+    }
+
+    /**
+     * Returns the estimated size of the object and all the objects reachable from it.
+     * Of collections, maps and arrays larger than the sample size only the first
+     * {@code sampleSize} elements are traversed and their size is extrapolated.
+     */
+    public long deepSize(Object object, int sampleSize) {
+        if (object == null) {
+            return 0;
+        }
+        if (sampleSize < 1) {
+            throw new IllegalArgumentException("Sample size must be positive: " + sampleSize);
+        }
+        return new Estimation(sampleSize).run(object);
+    }
+
+    private long arraySize(Class<?> componentType, int length) {
+        return align(ARRAY_HEADER + (long) length * typeSize(componentType));
+    }
+
+    private int typeSize(Class<?> type) {
+        if (type == long.class || type == double.class) {
+            return 8;
+        }
+        if (type == int.class || type == float.class) {
+            return 4;
+        }
+        if (type == short.class || type == char.class) {
+            return 2;
+        }
+        if (type == byte.class || type == boolean.class) {
+            return 1;
+        }
+        return REFERENCE;
+    }
+
+    private long align(long size) {
+        return (size + 7) & ~7L;
+    }
+
+    private Layout layout(Class<?> type) {
+        return LAYOUTS.computeIfAbsent(type, Layout::new);
+    }
+
+    /* Layout of the instances of a class: the field sizes are summed up over the hierarchy,
+       which ignores padding between fields but matches HotSpot for most classes. */
+    private static final class Layout {
+
+        private final long size;
+        private final Kind kind;
+        private final FieldAccessor[] references;
+
+        private Layout(Class<?> type) {
+            long fieldsSize = 0;
+            for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+                for (Field field : current.getDeclaredFields()) {
+                    if (!Modifier.isStatic(field.getModifiers())) {
+                        fieldsSize += typeSize(field.getType());
+                    }
+                }
+            }
+            size = align(HEADER + fieldsSize);
+            if (type == String.class) {
+                kind = Kind.STRING;
+            } else if (Collection.class.isAssignableFrom(type)) {
+                kind = Kind.COLLECTION;
+            } else if (Map.class.isAssignableFrom(type)) {
+                kind = Kind.MAP;
+            } else if (Enum.class.isAssignableFrom(type)) {
+                kind = Kind.SHARED;
+            } else if (ClassUtils.isJavaClass(type)) {
+                kind = Kind.JAVA;
+            } else {
+                kind = Kind.OBJECT;
+            }
+            references = kind == Kind.OBJECT
+                    ? FieldUtils.getFieldsStream(type)
+                            .filter(field -> !Modifier.isStatic(field.getModifiers()))
+                            .filter(field -> !field.getType().isPrimitive())
+                            .map(FieldAccessor::of)
+                            .toArray(FieldAccessor[]::new)
+                    : new FieldAccessor[0];
+        }
+    }
+
+    private enum Kind {
+        STRING, COLLECTION, MAP, SHARED, JAVA, OBJECT
+    }
+
+    /* Iterative traversal. The elements of a sampled container are measured on a stack
+       of their own, so their sizes can be extrapolated when the sample is complete.
+       Objects reachable from more than one sampled element are measured on the common stack
+       and counted once, otherwise an object shared by all the elements would be multiplied. */
+    private static final class Estimation {
+
+        private final int sampleSize;
+        private final Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        private final Set<Object> shared = Collections.newSetFromMap(new IdentityHashMap<>());
+        private Deque<Object> common = new ArrayDeque<>();
+
+        private Estimation(int sampleSize) {
+            this.sampleSize = sampleSize;
+        }
+
+        private long run(Object root) {
+            visited.add(root);
+            common.push(root);
+            return drain(common);
+        }
+
+        private long drain(Deque<Object> stack) {
+            long total = 0;
+            while (!stack.isEmpty()) {
+                total += visit(stack.pop(), stack);
+            }
+            return total;
+        }
+
+        private long visit(Object object, Deque<Object> stack) {
+            Class<?> type = object.getClass();
+            if (type.isArray()) {
+                int length = Array.getLength(object);
+                long size = arraySize(type.getComponentType(), length);
+                if (type.getComponentType().isPrimitive()) {
+                    return size;
+                }
+                return size + elements(Arrays.asList((Object[]) object).iterator(), length, stack);
+            }
+            Layout layout = layout(type);
+            switch (layout.kind) {
+                case STRING:
+                    int length = ((String) object).length();
+                    return layout.size + arraySize(COMPACT_STRINGS ? byte.class : char.class, length);
+                case COLLECTION:
+                    Collection<?> collection = (Collection<?>) object;
+                    return layout.size + arraySize(Object.class, collection.size())
+                            + elements(collection.iterator(), collection.size(), stack);
+                case MAP:
+                    Map<?, ?> map = (Map<?, ?>) object;
+                    int capacity = Integer.highestOneBit(Math.max(map.size() * 4 / 3, 1) * 2 - 1);
+                    return layout.size + arraySize(Object.class, capacity) + (long) map.size() * HASH_NODE
+                            + elements(map.keySet().iterator(), map.size(), stack)
+                            + elements(map.values().iterator(), map.size(), stack);
+                case OBJECT:
+                    for (FieldAccessor reference : layout.references) {
+                        push(reference.get(object), stack);
+                    }
+                    return layout.size;
+                case SHARED:
+                    return 0;
+                default:
+                    return layout.size;
+            }
+        }
+
+        /* Elements of small containers are pushed to the current stack. Of large containers
+           only the objects owned by a single sampled element are extrapolated, to the elements
+           not visited yet, and the elements left out of the sample are marked visited,
+           so they are not counted again elsewhere. */
+        private long elements(Iterator<?> elements, int count, Deque<Object> stack) {
+            if (count <= sampleSize) {
+                while (elements.hasNext()) {
+                    push(elements.next(), stack);
+                }
+                return 0;
+            }
+            List<Object> sample = new ArrayList<>(sampleSize);
+            for (int i = 0; i < sampleSize && elements.hasNext(); i++) {
+                sample.add(elements.next());
+            }
+            findShared(sample);
+            Deque<Object> outer = common;
+            common = new ArrayDeque<>();
+            Deque<Object> owned = new ArrayDeque<>();
+            for (Object element : sample) {
+                push(element, owned);
+            }
+            long sampled = owned.size();
+            long unsampled = 0;
+            while (elements.hasNext()) {
+                Object element = elements.next();
+                if (element != null && visited.add(element)) {
+                    unsampled++;
+                }
+            }
+            long size = drain(owned);
+            if (sampled > 0) {
+                size = size * (sampled + unsampled) / sampled;
+            }
+            size += drain(common);
+            common = outer;
+            return size;
+        }
+
+        /* Walks the subgraph of every sampled element, remembering which element reached
+           each object first. An object reached by another element becomes shared, and so does
+           everything below it, which is why its references are walked once more. */
+        private void findShared(List<Object> sample) {
+            Map<Object, Integer> owners = new IdentityHashMap<>();
+            Deque<Object> stack = new ArrayDeque<>();
+            for (int i = 0; i < sample.size(); i++) {
+                addReference(sample.get(i), stack);
+                while (!stack.isEmpty()) {
+                    Object object = stack.pop();
+                    if (shared.contains(object)) {
+                        continue;
+                    }
+                    Integer owner = owners.putIfAbsent(object, i);
+                    if (owner == null || owner != i && shared.add(object)) {
+                        references(object, stack);
+                    }
+                }
+            }
+        }
+
+        /* The same references visit() follows, with large containers cut to the sample size */
+        private void references(Object object, Deque<Object> stack) {
+            Class<?> type = object.getClass();
+            if (type.isArray()) {
+                if (!type.getComponentType().isPrimitive()) {
+                    addReferences(Arrays.asList((Object[]) object), stack);
+                }
+                return;
+            }
+            Layout layout = layout(type);
+            if (layout.kind == Kind.COLLECTION) {
+                addReferences((Collection<?>) object, stack);
+            } else if (layout.kind == Kind.MAP) {
+                addReferences(((Map<?, ?>) object).keySet(), stack);
+                addReferences(((Map<?, ?>) object).values(), stack);
+            } else if (layout.kind == Kind.OBJECT) {
+                for (FieldAccessor reference : layout.references) {
+                    addReference(reference.get(object), stack);
+                }
+            }
+        }
+
+        private void addReferences(Collection<?> references, Deque<Object> stack) {
+            Iterator<?> iterator = references.iterator();
+            for (int i = 0; i < sampleSize && iterator.hasNext(); i++) {
+                addReference(iterator.next(), stack);
+            }
+        }
+
+        private void addReference(@Nullable Object object, Deque<Object> stack) {
+            if (object != null && !visited.contains(object)) {
+                stack.push(object);
+            }
+        }
+
+        private void push(@Nullable Object object, Deque<Object> stack) {
+            if (object != null && visited.add(object)) {
+                (shared.contains(object) ? common : stack).push(object);
+            }
+        }
+    }
+}
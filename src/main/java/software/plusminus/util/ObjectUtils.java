@@ -16,46 +16,133 @@
 package software.plusminus.util;
 
 import lombok.experimental.UtilityClass;
-import org.apache.commons.collections.BeanMap;
-import org.springframework.beans.BeanWrapper;
-import org.springframework.beans.BeanWrapperImpl;
 import org.springframework.lang.Nullable;
 import software.plusminus.util.exception.UnknownMethodException;
 
-import java.beans.FeatureDescriptor;
 import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
-import java.util.Collection;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.IdentityHashMap;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Set;
-import java.util.stream.Stream;
+import java.util.stream.Collectors;
 
 @UtilityClass
 public class ObjectUtils {
 
     public Map<String, Object> toMap(Object object) {
-        return new BeanMap(object);
+        return new BeanPropertyMap(object);
+    }
+
+    public Map<String, Object> toSnapshotMap(Object object) {
+        return BeanPropertyMap.snapshot(object);
     }
 
     public String[] getNullPropertyNames(Object source) {
-        final BeanWrapper wrappedSource = new BeanWrapperImpl(source);
-        return Stream.of(wrappedSource.getPropertyDescriptors())
-                .map(FeatureDescriptor::getName)
-                .filter(propertyName -> wrappedSource.getPropertyValue(propertyName) == null)
+        BeanProperties properties = BeanProperties.of(source.getClass());
+        return getNullProperties(source, new BitSet(properties.size())).stream()
+                .mapToObj(properties::getName)
                 .toArray(String[]::new);
     }
+
+    /**
+     * Sets the bits of the null properties of the source, indexed as in {@link BeanProperties}.
+     * The passed bit set is cleared first, so it can be reused between calls.
+     */
+    public BitSet getNullProperties(Object source, BitSet result) {
+        result.clear();
+        BeanProperties properties = BeanProperties.of(source.getClass());
+        for (int i = 0; i < properties.size(); i++) {
+            if (properties.isNullable(i) && properties.read(source, i) == null) {
+                result.set(i);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Same as {@link #getNullProperties(Object, BitSet)} for classes with at most 64 properties.
+     */
+    public long getNullPropertiesMask(Object source) {
+        BeanProperties properties = BeanProperties.of(source.getClass());
+        if (properties.size() > Long.SIZE) {
+            throw new IllegalArgumentException(source.getClass().getName() + " has more than "
+                    + Long.SIZE + " properties");
+        }
+        long mask = 0;
+        for (int i = 0; i < properties.size(); i++) {
+            if (properties.isNullable(i) && properties.read(source, i) == null) {
+                mask |= 1L << i;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Copies the non-null properties of the source to the properties of the target
+     * with the same name and a compatible type.
+     */
+    public void copyNonNullProperties(Object source, Object target) {
+        BeanProperties sourceProperties = BeanProperties.of(source.getClass());
+        BeanProperties targetProperties = BeanProperties.of(target.getClass());
+        int[] targetIndexes = sourceProperties.getTargetIndexes(target.getClass());
+        for (int i = 0; i < targetIndexes.length; i++) {
+            int targetIndex = targetIndexes[i];
+            if (targetIndex == -1) {
+                continue;
+            }
+            Object value = sourceProperties.read(source, i);
+            if (value != null) {
+                targetProperties.write(target, targetIndex, value);
+            }
+        }
+    }
     
+    /* Detects real cycles: only a reference back to an object that is still being traversed
+       closes a cycle. A shared-but-acyclic reference (diamond) is not reported as circular. */
     public boolean containsCircularReferences(Object object) {
-        return containsCircular(object, identitySet());
+        return !ObjectGraph.walk(object, new ObjectGraph.Visitor() {
+            @Override
+            public ObjectGraph.Visit revisit(Object revisited, boolean onPath) {
+                return onPath ? ObjectGraph.Visit.TERMINATE : ObjectGraph.Visit.CONTINUE;
+            }
+        });
     }
     
     public Set<Object> findReferences(Object object) {
-        Set<Object> references = identitySet();
-        populateReferences(object, references);
-        return references;
+        return findReferences(object, false);
+    }
+
+    public Set<Object> findReferences(Object object, boolean parallel) {
+        if (parallel) {
+            return ObjectGraph.collectParallel(object);
+        }
+        return ObjectGraph.stream(object)
+                .collect(Collectors.toCollection(ObjectUtils::identitySet));
+    }
+
+    /**
+     * Copies the object and all the objects reachable from it, preserving shared references and cycles.
+     * Enums and immutable JVM types like strings, numbers or java.time types are shared with the original,
+     * {@code Optional}s are recreated around the copy of their value, and other JVM types like {@code Date}
+     * are cloned.
+     * Copied classes need a no-arg constructor, and JVM types which are neither immutable nor cloneable
+     * can't be copied; in both cases {@code ConstructionException} is thrown.
+     */
+    @Nullable
+    public <T> T deepCopy(@Nullable T object) {
+        return new DeepCopier().copy(object);
+    }
+
+    /**
+     * Compares object graphs structurally, see {@link StructuralEquality}.
+     */
+    public boolean deepEquals(@Nullable Object first, @Nullable Object second) {
+        return StructuralEquality.getDefault().equals(first, second);
+    }
+
+    public int deepHashCode(@Nullable Object object) {
+        return StructuralEquality.getDefault().hashCode(object);
     }
 
     public boolean equalsMethodIsOverridden(Object object) {
@@ -68,111 +155,56 @@ public class ObjectUtils {
         return equals.getDeclaringClass() != Object.class;
     }
 
+    /**
+     * Unwraps the object if it is a proxy known to a {@link ProxyResolver}, repeatedly for nested proxies.
+     * Returns the object itself if it is not a proxy or its target can't be resolved.
+     */
     @SuppressWarnings("unchecked")
     public <T> T unproxy(T object) {
-        if (object == null) {
-            return null;
-        }
-        Class<?> hibernateProxyClass = tryLoadClass("org.hibernate.proxy.HibernateProxy");
-        Class<?> lazyInitializerClass = tryLoadClass("org.hibernate.proxy.LazyInitializer");
-        if (hibernateProxyClass == null || lazyInitializerClass == null
-                || !hibernateProxyClass.isInstance(object)) {
-            return object;
-        }
-        try {
-            Method getLazyInitializer = hibernateProxyClass.getMethod("getHibernateLazyInitializer");
-            Object lazyInitializer = getLazyInitializer.invoke(object);
-            Method getImplementation = lazyInitializerClass.getMethod("getImplementation");
-            return (T) getImplementation.invoke(lazyInitializer);
-        } catch (ReflectiveOperationException e) {
-            return object;
+        Object current = object;
+        while (current != null) {
+            ProxyResolver resolver = ProxyResolvers.of(current.getClass());
+            if (resolver == null) {
+                break;
+            }
+            Object target = resolver.getTarget(current);
+            if (target == null || target == current) {
+                break;
+            }
+            current = target;
         }
+        return (T) current;
     }
 
-    @Nullable
-    private Class<?> tryLoadClass(String className) {
-        try {
-            return Class.forName(className);
-        } catch (ClassNotFoundException e) {
-            return null;
-        }
+    /**
+     * Registers a resolver, which takes precedence over the previously registered ones.
+     */
+    public void addProxyResolver(ProxyResolver resolver) {
+        ProxyResolvers.add(resolver);
     }
 
-    private void populateReferences(Object object, Set<Object> references) {
-        if (object == null) {
-            return;
-        }
-        boolean isJvmClass = ClassUtils.isJavaClass(object.getClass());
-        boolean isCollection = Collection.class.isAssignableFrom(object.getClass());
-        boolean isMap = Map.class.isAssignableFrom(object.getClass());
-        if (isJvmClass && !isCollection && !isMap) {
-            return;
-        }
-        
-        boolean added = references.add(object);
-        if (!added) {
-            return;
-        }
-        if (isCollection) {
-            Collection<?> collection = (Collection<?>) object;
-            collection.forEach(o -> ObjectUtils.populateReferences(o, references));
-        } else if (isMap) {
-            Map<?, ?> map = (Map<?, ?>) object;
-            map.keySet().forEach(k -> ObjectUtils.populateReferences(k, references));
-            map.values().forEach(v -> ObjectUtils.populateReferences(v, references));
-        } else {
-            fieldValuesStream(object)
-                    .forEach(value -> ObjectUtils.populateReferences(value, references));
-        }
+    /**
+     * Returns the resolver of Spring AOP proxies, both JDK and CGLIB ones, with static target sources.
+     * It is not registered by default, so {@link #unproxy(Object)} and {@link AnnotationUtils}
+     * see Spring proxies as they are unless it is added with {@link #addProxyResolver(ProxyResolver)}.
+     *
+     * @throws IllegalStateException if Spring AOP is not on the classpath
+     */
+    public ProxyResolver springAopProxyResolver() {
+        return ProxyResolvers.springAop();
     }
 
-    /* Detects real cycles by tracking the current traversal path (recursion stack).
-       A shared-but-acyclic reference (diamond) is not reported as circular, because
-       an object is removed from the path once its subtree has been fully traversed. */
-    private boolean containsCircular(Object object, Set<Object> path) {
-        if (object == null) {
-            return false;
-        }
-        boolean isJavaClass = ClassUtils.isJavaClass(object.getClass());
-        boolean isCollection = Collection.class.isAssignableFrom(object.getClass());
-        boolean isMap = Map.class.isAssignableFrom(object.getClass());
-        if (isJavaClass && !isCollection && !isMap) {
-            return false;
-        }
-        boolean isEnum = Enum.class.isAssignableFrom(object.getClass());
-        if (isEnum) {
-            return false;
-        }
-
-        boolean added = path.add(object);
-        if (!added) {
-            return true;
-        }
-        boolean circular;
-        if (isCollection) {
-            Collection<?> collection = (Collection<?>) object;
-            circular = collection.stream()
-                    .anyMatch(o -> ObjectUtils.containsCircular(o, path));
-        } else if (isMap) {
-            Map<?, ?> map = (Map<?, ?>) object;
-            circular = Stream.concat(map.keySet().stream(), map.values().stream())
-                    .anyMatch(k -> ObjectUtils.containsCircular(k, path));
-        } else {
-            circular = fieldValuesStream(object)
-                    .anyMatch(value -> ObjectUtils.containsCircular(value, path));
-        }
-        path.remove(object);
-        return circular;
-    }
-    
-    private Stream<Object> fieldValuesStream(Object object) {
-        return FieldUtils.getFieldsStream(object.getClass())
-                .filter(field -> !Modifier.isStatic(field.getModifiers()))
-                .map(field -> FieldUtils.read(object, field))
-                .filter(Objects::nonNull);
+    /**
+     * Unregisters a resolver registered with {@link #addProxyResolver(ProxyResolver)}.
+     *
+     * @return {@code false} if the resolver was not registered
+     */
+    public boolean removeProxyResolver(ProxyResolver resolver) {
+        return ProxyResolvers.remove(resolver);
     }
 
     private Set<Object> identitySet() {
         return Collections.newSetFromMap(new IdentityHashMap<>());
     }
-}
+
+}
\ No newline at end of file
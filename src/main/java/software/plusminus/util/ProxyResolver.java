@@ -0,0 +1,39 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.plusminus.util;
+
+import org.springframework.lang.Nullable;
+
+/**
+ * Unwraps proxies of one kind, e.g. lazy-loading or AOP proxies.
+ * Resolvers are registered with {@link ObjectUtils#addProxyResolver(ProxyResolver)}
+ * or discovered with {@link java.util.ServiceLoader}.
+ *
+ * @author Taras Shpek
+ */
+public interface ProxyResolver {
+
+    /**
+     * Called once per class; the result is cached.
+     */
+    boolean isProxyClass(Class<?> type);
+
+    /**
+     * Returns the object behind the proxy or {@code null} if it can't be resolved.
+     */
+    @Nullable
+    Object getTarget(Object proxy);
+}
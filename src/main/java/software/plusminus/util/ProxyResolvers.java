@@ -0,0 +1,177 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.plusminus.util;
+
+import org.springframework.lang.Nullable;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of {@link ProxyResolver}s with the resolver of every class cached,
+ * so checking an object which is not a proxy costs a single map lookup.
+ * Hibernate proxies are supported if Hibernate is on the classpath.
+ * The Spring AOP resolver is available, but has to be registered explicitly.
+ */
+final class ProxyResolvers {
+
+    private static final ProxyResolver NONE = new HandleResolver(Object.class, null);
+    /* Covers both JDK and CGLIB proxies created by Spring. Like AopProxyUtils.getSingletonTarget,
+       only static target sources are unwrapped: prototype, pooled or thread-local ones
+       would create or lease an instance on every call without it being released */
+    @Nullable
+    private static final ProxyResolver SPRING_AOP = createIfPresent(
+            "org.springframework.aop.framework.Advised", "getTargetSource",
+            "org.springframework.aop.TargetSource", "getTarget", "isStatic");
+
+    /* The resolvers and the cache built from them are replaced together, so a lookup
+       which runs concurrently with add or remove caches its result in the discarded map */
+    private static volatile Registry registry;
+
+    static {
+        List<ProxyResolver> resolvers = new ArrayList<>();
+        ProxyResolver hibernate = createIfPresent("org.hibernate.proxy.HibernateProxy", "getHibernateLazyInitializer",
+                "org.hibernate.proxy.LazyInitializer", "getImplementation", null);
+        if (hibernate != null) {
+            resolvers.add(hibernate);
+        }
+        for (ProxyResolver resolver : ServiceLoader.load(ProxyResolver.class)) {
+            resolvers.add(resolver);
+        }
+        registry = new Registry(resolvers);
+    }
+
+    private ProxyResolvers() {
+    }
+
+    static synchronized void add(ProxyResolver resolver) {
+        List<ProxyResolver> resolvers = new ArrayList<>(registry.resolvers);
+        resolvers.add(0, resolver);
+        registry = new Registry(resolvers);
+    }
+
+    static synchronized boolean remove(ProxyResolver resolver) {
+        List<ProxyResolver> resolvers = new ArrayList<>(registry.resolvers);
+        if (!resolvers.remove(resolver)) {
+            return false;
+        }
+        registry = new Registry(resolvers);
+        return true;
+    }
+
+    /**
+     * Returns the resolver of the class or {@code null} if its instances are not proxies.
+     */
+    @Nullable
+    static ProxyResolver of(Class<?> type) {
+        ProxyResolver resolver = registry.of(type);
+        return resolver == NONE ? null : resolver;
+    }
+
+    static ProxyResolver springAop() {
+        if (SPRING_AOP == null) {
+            throw new IllegalStateException("Spring AOP is not on the classpath");
+        }
+        return SPRING_AOP;
+    }
+
+    /* The handles are resolved once; if the library is absent no resolver is created.
+       If the holder has a guard method, the target is read only when the guard returns true */
+    @Nullable
+    private static ProxyResolver createIfPresent(String proxyClassName, String proxyMethod,
+                                                 String holderClassName, String holderMethod,
+                                                 @Nullable String holderGuard) {
+        try {
+            ClassLoader classLoader = ProxyResolvers.class.getClassLoader();
+            Class<?> proxyClass = Class.forName(proxyClassName, false, classLoader);
+            Class<?> holderClass = Class.forName(holderClassName, false, classLoader);
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            MethodHandle getHolder = lookup.unreflect(proxyClass.getMethod(proxyMethod));
+            MethodHandle getTarget = lookup.unreflect(holderClass.getMethod(holderMethod))
+                    .asType(MethodType.methodType(Object.class, holderClass));
+            if (holderGuard != null) {
+                MethodHandle noTarget = MethodHandles.dropArguments(
+                        MethodHandles.constant(Object.class, null), 0, holderClass);
+                getTarget = MethodHandles.guardWithTest(
+                        lookup.unreflect(holderClass.getMethod(holderGuard)), getTarget, noTarget);
+            }
+            MethodHandle handle = MethodHandles.filterReturnValue(getHolder, getTarget)
+                    .asType(MethodType.methodType(Object.class, Object.class));
+            return new HandleResolver(proxyClass, handle);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            /* The library is not on the classpath */
+            return null;
+        }
+    }
+
+    private static final class Registry {
+
+        private final List<ProxyResolver> resolvers;
+        private final Map<Class<?>, ProxyResolver> byClass = new ConcurrentHashMap<>();
+
+        private Registry(List<ProxyResolver> resolvers) {
+            this.resolvers = Collections.unmodifiableList(resolvers);
+        }
+
+        private ProxyResolver of(Class<?> type) {
+            return byClass.computeIfAbsent(type, this::find);
+        }
+
+        private ProxyResolver find(Class<?> type) {
+            for (ProxyResolver resolver : resolvers) {
+                if (resolver.isProxyClass(type)) {
+                    return resolver;
+                }
+            }
+            return NONE;
+        }
+    }
+
+    private static final class HandleResolver implements ProxyResolver {
+
+        private final Class<?> proxyClass;
+        private final MethodHandle getTarget;
+
+        private HandleResolver(Class<?> proxyClass, @Nullable MethodHandle getTarget) {
+            this.proxyClass = proxyClass;
+            this.getTarget = getTarget;
+        }
+
+        @Override
+        public boolean isProxyClass(Class<?> type) {
+            return proxyClass.isAssignableFrom(type);
+        }
+
+        @Override
+        @Nullable
+        public Object getTarget(Object proxy) {
+            try {
+                return (Object) getTarget.invokeExact(proxy);
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable e) {
+                return null;
+            }
+        }
+    }
+}
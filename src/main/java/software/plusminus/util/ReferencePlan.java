@@ -0,0 +1,134 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.plusminus.util;
+
+import com.google.common.collect.Iterators;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Describes, per class, how the object graph continues from its instances.
+ * Instances of JVM classes other than collections and maps, as well as enums, are leaves.
+ * For other classes only the fields whose declared type can hold a non-leaf object are kept,
+ * so fields like {@code String}, {@code Long} or {@code LocalDate} are never read.
+ */
+final class ReferencePlan {
+
+    private static final Map<Class<?>, ReferencePlan> PLANS = new ConcurrentHashMap<>();
+
+    private final Kind kind;
+    private final FieldAccessor[] fields;
+
+    private ReferencePlan(Class<?> type) {
+        if (Collection.class.isAssignableFrom(type)) {
+            kind = Kind.COLLECTION;
+        } else if (Map.class.isAssignableFrom(type)) {
+            kind = Kind.MAP;
+        } else if (ClassUtils.isJavaClass(type) || Enum.class.isAssignableFrom(type)) {
+            kind = Kind.LEAF;
+        } else {
+            kind = Kind.OBJECT;
+        }
+        fields = kind == Kind.OBJECT
+                ? FieldUtils.getFieldsStream(type)
+                        .filter(field -> !Modifier.isStatic(field.getModifiers()))
+                        .filter(field -> !isLeafType(field.getType()))
+                        .map(FieldAccessor::of)
+                        .toArray(FieldAccessor[]::new)
+                : new FieldAccessor[0];
+    }
+
+    static ReferencePlan of(Class<?> type) {
+        return PLANS.computeIfAbsent(type, ReferencePlan::new);
+    }
+
+    boolean isLeaf() {
+        return kind == Kind.LEAF;
+    }
+
+    Field[] getFields() {
+        Field[] result = new Field[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            result[i] = fields[i].getField();
+        }
+        return result;
+    }
+
+    /**
+     * Returns the objects directly referenced by the object; the iterator may return {@code null}s.
+     */
+    Iterator<?> children(Object object) {
+        switch (kind) {
+            case COLLECTION:
+                return ((Collection<?>) object).iterator();
+            case MAP:
+                Map<?, ?> map = (Map<?, ?>) object;
+                return Iterators.concat(map.keySet().iterator(), map.values().iterator());
+            case OBJECT:
+                return new FieldValuesIterator(object, fields);
+            default:
+                return Collections.emptyIterator();
+        }
+    }
+
+    /* A field can be skipped if every value it can hold is a leaf:
+       primitives, arrays, enums and final JVM classes like String, boxed numbers or java.time types. */
+    private static boolean isLeafType(Class<?> type) {
+        if (type.isPrimitive() || type.isArray() || type.isEnum()) {
+            return true;
+        }
+        return ClassUtils.isJavaClass(type)
+                && Modifier.isFinal(type.getModifiers())
+                && !Collection.class.isAssignableFrom(type)
+                && !Map.class.isAssignableFrom(type);
+    }
+
+    private enum Kind {
+        LEAF, COLLECTION, MAP, OBJECT
+    }
+
+    private static final class FieldValuesIterator implements Iterator<Object> {
+
+        private final Object object;
+        private final FieldAccessor[] fields;
+        private int index;
+
+        private FieldValuesIterator(Object object, FieldAccessor[] fields) {
+            this.object = object;
+            this.fields = fields;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return index < fields.length;
+        }
+
+        @Override
+        public Object next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return fields[index++].get(object);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.plusminus.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of classpath resource contents loaded through {@link ResourceUtils}, bounded by a byte budget.
+ * The least recently used resources are evicted first. Contents are kept either as strings,
+ * weighed at two bytes per character, or as compact UTF-8 bytes decoded on every string access.
+ * Resources larger than the whole budget are returned without being cached. Thread-safe.
+ *
+ * @author Taras Shpek
+ */
+public final class ResourceCache {
+
+    private final long maxBytes;
+    private final boolean compact;
+    private final Map<String, Object> contents = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    public ResourceCache(long maxBytes) {
+        this(maxBytes, false);
+    }
+
+    /**
+     * @param compact {@code true} to keep the contents as UTF-8 bytes
+     */
+    public ResourceCache(long maxBytes, boolean compact) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("Negative cache size: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+        this.compact = compact;
+    }
+
+    public String getString(String name) {
+        Object content = get(name);
+        return content instanceof String ? (String) content : new String((byte[]) content, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns a read-only view of the UTF-8 content.
+     */
+    public ByteBuffer getByteBuffer(String name) {
+        Object content = get(name);
+        byte[] array = content instanceof byte[] ? (byte[]) content
+                : ((String) content).getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.wrap(array).asReadOnlyBuffer();
+    }
+
+    public synchronized void invalidate(String name) {
+        Object content = contents.remove(name.startsWith("/") ? name : '/' + name);
+        if (content != null) {
+            bytes -= weigh(content);
+        }
+    }
+
+    public synchronized void clear() {
+        contents.clear();
+        bytes = 0;
+    }
+
+    public synchronized int size() {
+        return contents.size();
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /* The resource is loaded outside of the lock, so concurrent misses may load it twice */
+    private Object get(String resourceName) {
+        String name = resourceName.startsWith("/") ? resourceName : '/' + resourceName;
+        synchronized (this) {
+            Object content = contents.get(name);
+            if (content != null) {
+                hitCount++;
+                return content;
+            }
+            missCount++;
+        }
+        Object content = compact ? ResourceUtils.readBytes(name) : ResourceUtils.toString(name);
+        put(name, content);
+        return content;
+    }
+
+    private synchronized void put(String name, Object content) {
+        long weight = weigh(content);
+        if (weight > maxBytes) {
+            return;
+        }
+        Object previous = contents.put(name, content);
+        if (previous != null) {
+            bytes -= weigh(previous);
+        }
+        bytes += weight;
+        Iterator<Object> eldest = contents.values().iterator();
+        while (bytes > maxBytes) {
+            bytes -= weigh(eldest.next());
+            eldest.remove();
+            evictionCount++;
+        }
+    }
+
+    private static long weigh(Object content) {
+        return content instanceof byte[] ? ((byte[]) content).length : 2L * ((String) content).length();
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.plusminus.util;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Result of {@link ResourceUtils#loadAll(String)}: the contents of the loaded resources
+ * and the failures of the others, both by classpath-relative resource name.
+ *
+ * @author Taras Shpek
+ */
+public final class ResourceLoadResult {
+
+    private final Map<String, String> contents;
+    private final Map<String, Exception> failures;
+
+    ResourceLoadResult(Map<String, String> contents, Map<String, Exception> failures) {
+        this.contents = Collections.unmodifiableMap(contents);
+        this.failures = Collections.unmodifiableMap(failures);
+    }
+
+    public Map<String, String> getContents() {
+        return contents;
+    }
+
+    public Map<String, Exception> getFailures() {
+        return failures;
+    }
+
+    public boolean hasFailures() {
+        return !failures.isEmpty();
+    }
+}
@@ -16,12 +16,32 @@
 package software.plusminus.util;
 
 import lombok.experimental.UtilityClass;
+import org.springframework.core.io.Resource;
 import software.plusminus.util.exception.FileException;
 
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
-import java.util.Scanner;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
 
 /**
  * Utility class for resource folder.
@@ -30,31 +50,247 @@ import java.util.Scanner;
  */
 @UtilityClass
 public class ResourceUtils {
+
+    private static final int BUFFER_SIZE = 8192;
+    /* Some VMs reserve header words in arrays */
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+    private static final int MAX_MISSES = 1024;
+    private static final Set<String> MISSES = ConcurrentHashMap.newKeySet();
     
+    /**
+     * Checks the classpath index first, for files and for directories containing them.
+     * Other names are probed through the class loader; up to {@value #MAX_MISSES} names
+     * which are not found are cached, after that the cache is cleared.
+     */
     public boolean isResource(String name) {
         if (name.replace('.', ' ').trim().isEmpty()) {
             return false;
         }
-        if (!name.isEmpty() && !name.startsWith("/")) {
-            name = '/' + name;
+        String path = name.startsWith("/") ? name.substring(1) : name;
+        NavigableSet<String> paths = ClassUtils.getClasspathResourcePaths();
+        if (paths.contains(path)) {
+            return true;
+        }
+        String directory = path.endsWith("/") ? path : path + '/';
+        String next = paths.ceiling(directory);
+        if (next != null && next.startsWith(directory)) {
+            return true;
+        }
+        if (MISSES.contains(path)) {
+            return false;
+        }
+        if (ResourceUtils.class.getResource('/' + path) != null) {
+            return true;
+        }
+        if (MISSES.size() >= MAX_MISSES) {
+            MISSES.clear();
+        }
+        MISSES.add(path);
+        return false;
+    }
+
+    /**
+     * Lists the resources under the directory and its subdirectories, e.g. {@code "templates"},
+     * as names relative to the classpath root, without a leading slash.
+     */
+    public List<String> listResources(String directory) {
+        String prefix = directory.startsWith("/") ? directory.substring(1) : directory;
+        if (!prefix.isEmpty() && !prefix.endsWith("/")) {
+            prefix += '/';
         }
-        return ResourceUtils.class.getResource(name) != null;
+        return new ArrayList<>(ClassUtils.getClasspathResourcePaths().subSet(prefix, prefix + Character.MAX_VALUE));
     }
     
     public String toString(String name) {
-        if (!name.startsWith("/")) {
-            name = '/' + name;
+        return toString(name, StandardCharsets.UTF_8);
+    }
+
+    public String toString(String name, Charset charset) {
+        return new String(readBytes(name), charset);
+    }
+
+    /**
+     * Reads the whole resource into an array allocated once with the size of the resource,
+     * if the size is known (as for files and jar entries).
+     */
+    public byte[] readBytes(String name) {
+        URL url = getUrl(name);
+        try {
+            URLConnection connection = url.openConnection();
+            long length = connection.getContentLengthLong();
+            if (length > MAX_ARRAY_SIZE) {
+                throw new FileException("Resource is too large: " + name);
+            }
+            try (InputStream input = connection.getInputStream()) {
+                return length < 0 ? readUnknownLength(input, name) : readFully(input, (int) length);
+            }
+        } catch (IOException e) {
+            throw new FileException(e);
         }
-        try (InputStream input = ResourceUtils.class.getResourceAsStream(name)) {
-            if (input == null) {
-                throw new FileException("Resource not found: " + name);
+    }
+
+    public ResourceLoadResult loadAll(String pattern) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            return loadAll(pattern, StandardCharsets.UTF_8, executor);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Loads the contents of all the resources matching the Ant-style pattern, e.g. {@code "fixtures/**"},
+     * from the whole classpath on the executor, which is not shut down. If several classpath entries
+     * contain a resource with the same name, the first one is loaded.
+     * A resource which can't be read, including one reported as not readable, is listed in the failures
+     * of the result instead of failing the others. Matched directories are skipped.
+     */
+    public ResourceLoadResult loadAll(String pattern, Charset charset, ExecutorService executor) {
+        String locationPattern = pattern.startsWith("classpath") ? pattern
+                : "classpath*:" + (pattern.startsWith("/") ? pattern.substring(1) : pattern);
+        List<Resource> resources = ClassUtils.getResources(locationPattern);
+        Map<String, Future<String>> futures = new LinkedHashMap<>();
+        for (Resource resource : resources) {
+            String path = ClassUtils.toClasspathPath(resource);
+            String name = path == null ? resource.getDescription() : path;
+            if (!name.endsWith("/") && !futures.containsKey(name)) {
+                /* isReadable opens a connection for jar entries, so it is checked by the task too */
+                futures.put(name, executor.submit(() -> {
+                    if (!resource.isReadable()) {
+                        throw new FileException("Resource is not readable: " + resource.getDescription());
+                    }
+                    return read(resource, charset);
+                }));
             }
-            try (Scanner scanner = new Scanner(input, StandardCharsets.UTF_8.name()).useDelimiter("\\A")) {
-                return scanner.hasNext() ? scanner.next() : "";
+        }
+        Map<String, String> contents = new LinkedHashMap<>();
+        Map<String, Exception> failures = new LinkedHashMap<>();
+        for (Map.Entry<String, Future<String>> entry : futures.entrySet()) {
+            try {
+                contents.put(entry.getKey(), entry.getValue().get());
+            } catch (ExecutionException e) {
+                failures.put(entry.getKey(), e.getCause() instanceof Exception ? (Exception) e.getCause() : e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new FileException(e);
             }
+        }
+        return new ResourceLoadResult(contents, failures);
+    }
+
+    public ByteBuffer readByteBuffer(String name) {
+        return ByteBuffer.wrap(readBytes(name));
+    }
+
+    /**
+     * Opens the resource; the caller must close the stream.
+     */
+    public InputStream openStream(String name) {
+        try {
+            return getUrl(name).openStream();
         } catch (IOException e) {
             throw new FileException(e);
         }
     }
-    
+
+    public BufferedReader openReader(String name) {
+        return openReader(name, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Opens the resource as text; the caller must close the reader.
+     */
+    public BufferedReader openReader(String name, Charset charset) {
+        return new BufferedReader(new InputStreamReader(openStream(name), charset));
+    }
+
+    /**
+     * Lazily reads the lines of the resource; the stream must be closed to close the resource.
+     */
+    public Stream<String> lines(String name) {
+        BufferedReader reader = openReader(name);
+        return reader.lines().onClose(() -> {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                throw new FileException(e);
+            }
+        });
+    }
+
+    /**
+     * Copies the resource to the output stream, which is not closed.
+     *
+     * @return the number of copied bytes
+     */
+    public long transferTo(String name, OutputStream output) {
+        try (InputStream input = openStream(name)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long total = 0;
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+                total += read;
+            }
+            return total;
+        } catch (IOException e) {
+            throw new FileException(e);
+        }
+    }
+
+    private URL getUrl(String name) {
+        if (!name.startsWith("/")) {
+            name = '/' + name;
+        }
+        URL url = ResourceUtils.class.getResource(name);
+        if (url == null) {
+            throw new FileException("Resource not found: " + name);
+        }
+        return url;
+    }
+
+    private String read(Resource resource, Charset charset) throws IOException {
+        long length = resource.contentLength();
+        if (length > MAX_ARRAY_SIZE) {
+            throw new FileException("Resource is too large: " + resource);
+        }
+        try (InputStream input = resource.getInputStream()) {
+            byte[] bytes = length < 0 ? readUnknownLength(input, resource) : readFully(input, (int) length);
+            return new String(bytes, charset);
+        }
+    }
+
+    private byte[] readFully(InputStream input, int length) throws IOException {
+        byte[] bytes = new byte[length];
+        int offset = 0;
+        while (offset < length) {
+            int read = input.read(bytes, offset, length - offset);
+            if (read == -1) {
+                return Arrays.copyOf(bytes, offset);
+            }
+            offset += read;
+        }
+        return bytes;
+    }
+
+    /* The buffer grows by doubling up to the largest array size; only the final copy trims it */
+    private byte[] readUnknownLength(InputStream input, Object resource) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int size = 0;
+        int read;
+        while ((read = input.read(buffer, size, buffer.length - size)) != -1) {
+            size += read;
+            if (size == buffer.length) {
+                if (size == MAX_ARRAY_SIZE) {
+                    if (input.read() == -1) {
+                        return buffer;
+                    }
+                    throw new FileException("Resource is too large: " + resource);
+                }
+                buffer = Arrays.copyOf(buffer, (int) Math.min(buffer.length * 2L, MAX_ARRAY_SIZE));
+            }
+        }
+        return size == buffer.length ? buffer : Arrays.copyOf(buffer, size);
+    }
 }
@@ -0,0 +1,343 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.plusminus.util;
+
+import org.springframework.lang.Nullable;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Structural equality of object graphs. Objects of the same class are compared field by field,
+ * unless the class overrides {@code equals}; arrays, collections and maps are compared by their elements.
+ * Objects of different classes are never equal.
+ * Cycles are supported: a pair of objects which is already being compared is assumed equal.
+ * Fields are resolved once per class, and fields annotated with one of the excluded annotations are ignored.
+ *
+ * @author Taras Shpek
+ */
+public final class StructuralEquality {
+
+    /** Hashes are computed down to this depth, so they stay consistent with {@link #equals} for cycles. */
+    public static final int HASH_DEPTH = 4;
+
+    private static final StructuralEquality DEFAULT = new StructuralEquality(Collections.emptySet());
+
+    private final Set<Class<? extends Annotation>> excluded;
+    private final Map<Class<?>, Plan> plans = new ConcurrentHashMap<>();
+
+    private StructuralEquality(Set<Class<? extends Annotation>> excluded) {
+        this.excluded = excluded;
+    }
+
+    public static StructuralEquality getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns an instance ignoring fields annotated with any of the annotations.
+     * Instances cache their class plans, so they should be reused.
+     */
+    @SafeVarargs
+    public static StructuralEquality excluding(Class<? extends Annotation>... annotations) {
+        return new StructuralEquality(new HashSet<>(Arrays.asList(annotations)));
+    }
+
+    public boolean equals(@Nullable Object first, @Nullable Object second) {
+        return new Comparison().run(first, second);
+    }
+
+    public int hashCode(@Nullable Object object) {
+        return hash(object, HASH_DEPTH);
+    }
+
+    private Plan plan(Class<?> type) {
+        return plans.computeIfAbsent(type, Plan::new);
+    }
+
+    private int hash(@Nullable Object object, int depth) {
+        if (object == null) {
+            return 0;
+        }
+        Plan plan = plan(object.getClass());
+        if (plan.kind == Kind.EQUALS) {
+            return object.hashCode();
+        }
+        if (plan.kind == Kind.PRIMITIVE_ARRAY) {
+            return Arrays.deepHashCode(new Object[]{object});
+        }
+        if (depth == 0) {
+            return object.getClass().hashCode();
+        }
+        int result = 1;
+        switch (plan.kind) {
+            case ARRAY:
+                for (int i = 0; i < Array.getLength(object); i++) {
+                    result = 31 * result + hash(Array.get(object, i), depth - 1);
+                }
+                return result;
+            case LIST:
+                for (Object element : (Collection<?>) object) {
+                    result = 31 * result + hash(element, depth - 1);
+                }
+                return result;
+            case SET:
+                /* Order-independent, like Set.hashCode */
+                for (Object element : (Collection<?>) object) {
+                    result += hash(element, depth - 1);
+                }
+                return result;
+            case MAP:
+                for (Map.Entry<?, ?> entry : ((Map<?, ?>) object).entrySet()) {
+                    result += hash(entry.getKey(), depth - 1) ^ hash(entry.getValue(), depth - 1);
+                }
+                return result;
+            default:
+                for (FieldAccessor field : plan.fields) {
+                    result = 31 * result + hash(field.get(object), depth - 1);
+                }
+                return result;
+        }
+    }
+
+    private enum Kind {
+        EQUALS, PRIMITIVE_ARRAY, ARRAY, LIST, SET, MAP, FIELDS
+    }
+
+    /* JVM classes and classes overriding equals are compared with equals, except for
+       arrays, collections and maps which are compared element by element */
+    private final class Plan {
+
+        private final Kind kind;
+        private final FieldAccessor[] fields;
+
+        private Plan(Class<?> type) {
+            if (type.isArray()) {
+                kind = type.getComponentType().isPrimitive() ? Kind.PRIMITIVE_ARRAY : Kind.ARRAY;
+            } else if (Set.class.isAssignableFrom(type)) {
+                kind = Kind.SET;
+            } else if (Collection.class.isAssignableFrom(type)) {
+                kind = Kind.LIST;
+            } else if (Map.class.isAssignableFrom(type)) {
+                kind = Kind.MAP;
+            } else if (ClassUtils.isJavaClass(type) || Enum.class.isAssignableFrom(type) || overridesEquals(type)) {
+                kind = Kind.EQUALS;
+            } else {
+                kind = Kind.FIELDS;
+            }
+            fields = kind == Kind.FIELDS
+                    ? FieldUtils.getFieldsStream(type)
+                            .filter(field -> !Modifier.isStatic(field.getModifiers()))
+                            .filter(field -> !isExcluded(field))
+                            .map(FieldAccessor::of)
+                            .toArray(FieldAccessor[]::new)
+                    : new FieldAccessor[0];
+        }
+
+        private boolean overridesEquals(Class<?> type) {
+            try {
+                return type.getMethod("equals", Object.class).getDeclaringClass() != Object.class;
+            } catch (NoSuchMethodException e) {
+                return false;
+            }
+        }
+
+        private boolean isExcluded(Field field) {
+            for (Annotation annotation : field.getAnnotations()) {
+                if (excluded.contains(annotation.annotationType())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /* Pairs are compared iteratively from a work stack. A pair is compared once:
+       if it is reached again, e.g. through a cycle, it is assumed equal. Pairs are journaled,
+       so a tentative match of unordered elements can be rolled back if it fails. */
+    private final class Comparison {
+
+        private final Set<Pair> compared = new HashSet<>();
+        private final List<Pair> journal = new ArrayList<>();
+        private final Deque<Object> stack = new ArrayDeque<>();
+
+        private boolean run(@Nullable Object first, @Nullable Object second) {
+            return push(first, second) && drain(0);
+        }
+
+        /* Compares the pairs on the stack above the mark */
+        private boolean drain(int mark) {
+            while (stack.size() > mark) {
+                Object right = stack.pop();
+                Object left = stack.pop();
+                if (!compare(left, right)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean push(@Nullable Object first, @Nullable Object second) {
+            if (first == second) {
+                return true;
+            }
+            if (first == null || second == null || first.getClass() != second.getClass()) {
+                return false;
+            }
+            Pair pair = new Pair(first, second);
+            if (compared.add(pair)) {
+                journal.add(pair);
+                stack.push(first);
+                stack.push(second);
+            }
+            return true;
+        }
+
+        private boolean compare(Object first, Object second) {
+            Plan plan = plan(first.getClass());
+            switch (plan.kind) {
+                case EQUALS:
+                    return first.equals(second);
+                case PRIMITIVE_ARRAY:
+                    return Arrays.deepEquals(new Object[]{first}, new Object[]{second});
+                case ARRAY:
+                    Object[] firstArray = (Object[]) first;
+                    Object[] secondArray = (Object[]) second;
+                    return firstArray.length == secondArray.length
+                            && pushAll(Arrays.asList(firstArray).iterator(), Arrays.asList(secondArray).iterator());
+                case LIST:
+                    Collection<?> firstCollection = (Collection<?>) first;
+                    Collection<?> secondCollection = (Collection<?>) second;
+                    return firstCollection.size() == secondCollection.size()
+                            && pushAll(firstCollection.iterator(), secondCollection.iterator());
+                case SET:
+                    return matchAll(new ArrayList<>((Collection<?>) first), new ArrayList<>((Collection<?>) second));
+                case MAP:
+                    return matchAll(entries((Map<?, ?>) first), entries((Map<?, ?>) second));
+                default:
+                    for (FieldAccessor field : plan.fields) {
+                        if (!push(field.get(first), field.get(second))) {
+                            return false;
+                        }
+                    }
+                    return true;
+            }
+        }
+
+        private boolean pushAll(Iterator<?> first, Iterator<?> second) {
+            while (first.hasNext()) {
+                if (!push(first.next(), second.next())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /* Unordered elements are bucketed by hash and matched within this comparison,
+           so cycles through sets and maps still end at pairs which are already being compared */
+        private boolean matchAll(List<?> first, List<?> second) {
+            if (first.size() != second.size()) {
+                return false;
+            }
+            Map<Integer, List<Object>> buckets = new HashMap<>();
+            for (Object element : second) {
+                buckets.computeIfAbsent(StructuralEquality.this.hashCode(element), key -> new ArrayList<>())
+                        .add(element);
+            }
+            for (Object element : first) {
+                List<Object> candidates = buckets.get(StructuralEquality.this.hashCode(element));
+                if (candidates == null || !removeMatch(candidates, element)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean removeMatch(List<Object> candidates, Object element) {
+            for (Iterator<Object> iterator = candidates.iterator(); iterator.hasNext(); ) {
+                if (tryMatch(element, iterator.next())) {
+                    iterator.remove();
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /* Compares the pair completely; if it isn't equal, the pairs assumed meanwhile are forgotten */
+        private boolean tryMatch(Object element, Object candidate) {
+            int stackMark = stack.size();
+            int journalMark = journal.size();
+            if (push(element, candidate) && drain(stackMark)) {
+                return true;
+            }
+            while (stack.size() > stackMark) {
+                stack.pop();
+            }
+            while (journal.size() > journalMark) {
+                compared.remove(journal.remove(journal.size() - 1));
+            }
+            return false;
+        }
+
+        private List<Object> entries(Map<?, ?> map) {
+            List<Object> entries = new ArrayList<>(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                entries.add(Arrays.asList(entry.getKey(), entry.getValue()));
+            }
+            return entries;
+        }
+    }
+
+    private static final class Pair {
+
+        private final Object first;
+        private final Object second;
+
+        private Pair(Object first, Object second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (!(object instanceof Pair)) {
+                return false;
+            }
+            Pair pair = (Pair) object;
+            return first == pair.first && second == pair.second;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(first) + System.identityHashCode(second);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package software.plusminus.util;
+
+import org.junit.Test;
+import software.plusminus.util.helpers.ChildTestEntity;
+import software.plusminus.util.helpers.Id;
+import software.plusminus.util.helpers.TestEntity;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class EntityIndexTest {
+
+    @Test
+    public void putAndGet() {
+        EntityIndex<Object> index = new EntityIndex<>();
+        TestEntity entity = new TestEntity(1L, "a");
+        ChildTestEntity child = new ChildTestEntity(1L, "b");
+
+        assertThat(index.put(entity)).isNull();
+        assertThat(index.put(child)).isNull();
+
+        assertThat(index.size()).isEqualTo(2);
+        assertThat(index.get(TestEntity.class, 1L)).isSameAs(entity);
+        assertThat(index.get(ChildTestEntity.class, (Object) 1L)).isSameAs(child);
+        assertThat(index.get(TestEntity.class, 2L)).isNull();
+        assertThat(index.find(new TestEntity(1L, "other"))).isSameAs(entity);
+    }
+
+    @Test
+    public void putReplacesEntityWithSameId() {
+        EntityIndex<TestEntity> index = new EntityIndex<>();
+        TestEntity first = new TestEntity(1L, "a");
+        TestEntity second = new TestEntity(1L, "b");
+        index.put(first);
+        assertThat(index.put(second)).isSameAs(first);
+        assertThat(index.values()).containsExactly(second);
+    }
+
+    @Test
+    public void mergeAll() {
+        EntityIndex<TestEntity> index = new EntityIndex<>();
+        index.mergeAll(Arrays.asList(new TestEntity(1L, "a"), new TestEntity(2L, "b"), new TestEntity(1L, "c")),
+                (existing, entity) -> new TestEntity(existing.getId(), existing.getMyField() + entity.getMyField()));
+        assertThat(index.size()).isEqualTo(2);
+        assertThat(index.get(TestEntity.class, 1L).getMyField()).isEqualTo("ac");
+        assertThat(index.get(TestEntity.class, 2L).getMyField()).isEqualTo("b");
+    }
+
+    @Test
+    public void mergeRemovesEntityWhenMergerReturnsNull() {
+        EntityIndex<Object> index = new EntityIndex<>();
+        index.put(new TestEntity(1L, "a"));
+        index.put(new StringIdEntity("key"));
+
+        assertThat(index.merge(new TestEntity(1L, "b"), (existing, entity) -> null)).isNull();
+        assertThat(index.merge(new StringIdEntity("key"), (existing, entity) -> null)).isNull();
+
+        assertThat(index.get(TestEntity.class, 1L)).isNull();
+        assertThat(index.get(StringIdEntity.class, "key")).isNull();
+        assertThat(index.size()).isZero();
+        assertThat(index.values()).isEmpty();
+    }
+
+    @Test
+    public void nonNumericIds() {
+        EntityIndex<StringIdEntity> index = new EntityIndex<>();
+        StringIdEntity entity = new StringIdEntity("key");
+        index.put(entity);
+        assertThat(index.get(StringIdEntity.class, "key")).isSameAs(entity);
+        assertThat(index.remove(new StringIdEntity("key"))).isSameAs(entity);
+        assertThat(index.isEmpty()).isTrue();
+    }
+
+    @Test
+    public void compositeIds() {
+        EntityIndex<CompositeIdEntity> index = new EntityIndex<>();
+        CompositeIdEntity entity = new CompositeIdEntity("a", 1);
+        index.put(entity);
+        index.put(new CompositeIdEntity("a", 2));
+        assertThat(index.find(new CompositeIdEntity("a", 1))).isSameAs(entity);
+        assertThat(index.get(CompositeIdEntity.class, EntityUtils.findIdKey(entity))).isSameAs(entity);
+        assertThat(index.size()).isEqualTo(2);
+    }
+
+    @Test
+    public void entityWithoutIdIsRejected() {
+        EntityIndex<TestEntity> index = new EntityIndex<>();
+        assertThatThrownBy(() -> index.put(new TestEntity(null, "a")))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void lookupsOfUnindexedClassesDontCreateGroups() {
+        EntityIndex<Object> index = new EntityIndex<>();
+        index.put(new TestEntity(1L, "a"));
+        Object withoutIdField = new Object();
+
+        assertThat(index.find(withoutIdField)).isNull();
+        assertThat(index.contains(withoutIdField)).isFalse();
+        assertThat(index.remove(withoutIdField)).isNull();
+        assertThat(index.contains(new ChildTestEntity(1L, "b"))).isFalse();
+        assertThat(index.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void entityWithoutIdIsNotContained() {
+        EntityIndex<Object> index = new EntityIndex<>();
+        index.put(new TestEntity(1L, "a"));
+        index.put(new StringIdEntity("a"));
+        index.put(new CompositeIdEntity("a", 1));
+
+        assertThat(index.contains(new TestEntity(null, "a"))).isFalse();
+        assertThat(index.remove(new TestEntity(null, "a"))).isNull();
+        assertThat(index.contains(new StringIdEntity(null))).isFalse();
+        assertThat(index.contains(new CompositeIdEntity(null, 1))).isFalse();
+        assertThat(index.size()).isEqualTo(3);
+    }
+
+    private static class StringIdEntity {
+        @Id
+        private final String id;
+
+        StringIdEntity(String id) {
+            this.id = id;
+        }
+    }
+
+    private static class CompositeIdEntity {
+        @Id
+        private final String name;
+        @Id
+        private final long number;
+
+        CompositeIdEntity(String name, long number) {
+            this.name = name;
+            this.number = number;
+        }
+    }
+}
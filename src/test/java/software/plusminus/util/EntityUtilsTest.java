@@ -17,8 +17,16 @@ package software.plusminus.util;
 
 import org.junit.Test;
 import software.plusminus.util.helpers.ChildTestEntity;
+import software.plusminus.util.helpers.EmbeddedId;
+import software.plusminus.util.helpers.Id;
 import software.plusminus.util.helpers.TestEntity;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class EntityUtilsTest {
@@ -56,7 +64,107 @@ public class EntityUtilsTest {
         assertThat(EntityUtils.findIdField(String.class)).isNotPresent();
     }
 
+    @Test
+    public void findId_ReturnsNullWhenIdIsNull() {
+        assertThat(EntityUtils.findId(new TestEntity(null, "text"), Long.class)).isNull();
+    }
+
+    @Test
+    public void findId_RepeatedCallsUseSameField() {
+        assertThat(EntityUtils.findIdField(TestEntity.class).get())
+                .isSameAs(EntityUtils.findIdField(TestEntity.class).get());
+        assertThat(EntityUtils.findId(new TestEntity(3L, "text"))).isEqualTo(3L);
+        assertThat(EntityUtils.findId(new TestEntity(5L, "text"))).isEqualTo(5L);
+    }
+
+    @Test
+    public void findLongIds() {
+        List<TestEntity> entities = Arrays.asList(new TestEntity(1L, "a"), new TestEntity(null, "b"),
+                new ChildTestEntity(3L, "c"));
+        assertThat(EntityUtils.findLongIds(entities)).containsExactly(1L, 3L);
+    }
+
+    @Test
+    public void findLongIds_InParallel() {
+        List<TestEntity> entities = LongStream.range(0, 10_000)
+                .mapToObj(id -> new TestEntity(id, "text"))
+                .collect(Collectors.toList());
+        assertThat(EntityUtils.findLongIds(entities, true)).isEqualTo(LongStream.range(0, 10_000).toArray());
+    }
+
+    @Test
+    public void findLongIdSet() {
+        List<TestEntity> entities = Arrays.asList(new TestEntity(1L, "a"), new TestEntity(1L, "b"),
+                new TestEntity(2L, "c"));
+        LongHashSet ids = EntityUtils.findLongIdSet(entities);
+        assertThat(ids.size()).isEqualTo(2);
+        assertThat(ids.contains(1L)).isTrue();
+        assertThat(ids.contains(2L)).isTrue();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void findLongIds_FailsOnNonLongId() {
+        EntityUtils.findLongIds(Collections.singletonList(new StringIdEntity()));
+    }
+
+    @Test
+    public void findIdKey() {
+        EntityKey key = EntityUtils.findIdKey(new TestEntity(2L, "text"));
+        assertThat(key).isEqualTo(EntityUtils.findIdKey(new TestEntity(2L, "other")));
+        assertThat(key.size()).isEqualTo(1);
+        assertThat(key.getComponent(0)).isEqualTo(2L);
+    }
+
+    @Test
+    public void findIdKey_WithCompositeId() {
+        EntityKey key = EntityUtils.findIdKey(new CompositeIdEntity("a", 1));
+        assertThat(key).isEqualTo(EntityUtils.findIdKey(new CompositeIdEntity("a", 1)));
+        assertThat(key.hashCode()).isEqualTo(EntityUtils.findIdKey(new CompositeIdEntity("a", 1)).hashCode());
+        assertThat(key).isNotEqualTo(EntityUtils.findIdKey(new CompositeIdEntity("a", 2)));
+        assertThat(EntityUtils.findIdKey(new CompositeIdEntity(null, 1))).isNull();
+    }
+
+    @Test
+    public void findIdKey_WithEmbeddedId() {
+        EntityKey key = EntityUtils.findIdKey(new EmbeddedIdEntity(new CompositeIdEntity("a", 1)));
+        assertThat(key).isEqualTo(EntityUtils.findIdKey(new EmbeddedIdEntity(new CompositeIdEntity("a", 1))));
+        assertThat(key.size()).isEqualTo(2);
+        assertThat(EntityUtils.findIdKey("plain string")).isNull();
+    }
+
+    @Test
+    public void findIdFields() {
+        assertThat(EntityUtils.findIdFields(CompositeIdEntity.class)).hasSize(2);
+        assertThat(EntityUtils.findIdField(EmbeddedIdEntity.class)).isPresent();
+    }
+
     private TestEntity createTestEntity() {
         return new TestEntity(2L, "some text");
     }
-}
\ No newline at end of file
+
+    private static class StringIdEntity {
+        @Id
+        private String id = "id";
+    }
+
+    private static class CompositeIdEntity {
+        @Id
+        private final String name;
+        @Id
+        private final int number;
+
+        CompositeIdEntity(String name, int number) {
+            this.name = name;
+            this.number = number;
+        }
+    }
+
+    private static class EmbeddedIdEntity {
+        @EmbeddedId
+        private final CompositeIdEntity id;
+
+        EmbeddedIdEntity(CompositeIdEntity id) {
+            this.id = id;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package software.plusminus.util;
+
+import org.junit.Test;
+import software.plusminus.util.helpers.Metrics;
+
+import java.lang.reflect.Field;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class FieldAccessorTest {
+
+    @Test
+    public void ofIsCachedPerField() throws Exception {
+        Field field = Metrics.class.getDeclaredField("total");
+        assertThat(FieldAccessor.of(field)).isSameAs(FieldAccessor.of(field));
+    }
+
+    @Test
+    public void getAndSet() throws Exception {
+        Metrics metrics = new Metrics(1, 2L, 3.0, true, 4L);
+        FieldAccessor accessor = FieldAccessor.of(Metrics.class.getDeclaredField("boxedTotal"));
+        accessor.set(metrics, 5L);
+        assertThat(accessor.get(metrics)).isEqualTo(5L);
+    }
+
+    @Test
+    public void getLongWidensIntField() throws Exception {
+        Metrics metrics = new Metrics(7, 2L, 3.0, true, 4L);
+        FieldAccessor accessor = FieldAccessor.of(Metrics.class.getDeclaredField("count"));
+        assertThat(accessor.getLong(metrics)).isEqualTo(7L);
+        assertThat(accessor.getDouble(metrics)).isEqualTo(7.0);
+    }
+
+    @Test
+    public void getLongUnboxesWrapperField() throws Exception {
+        Metrics metrics = new Metrics(1, 2L, 3.0, true, 4L);
+        FieldAccessor accessor = FieldAccessor.of(Metrics.class.getDeclaredField("boxedTotal"));
+        assertThat(accessor.getLong(metrics)).isEqualTo(4L);
+    }
+
+    @Test
+    public void getIntOnLongFieldIsRejected() throws Exception {
+        Metrics metrics = new Metrics(1, 2L, 3.0, true, 4L);
+        FieldAccessor accessor = FieldAccessor.of(Metrics.class.getDeclaredField("total"));
+        assertThatThrownBy(() -> accessor.getInt(metrics))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void setOnFinalStaticFieldIsRejected() throws Exception {
+        FieldAccessor accessor = FieldAccessor.of(Constants.class.getDeclaredField("VALUE"));
+        assertThat(accessor.isWritable()).isFalse();
+        assertThat(accessor.getInt(null)).isEqualTo(42);
+        assertThatThrownBy(() -> accessor.setInt(null, 1))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void setNullOnPrimitiveFieldIsRejected() throws Exception {
+        Metrics metrics = new Metrics(1, 2L, 3.0, true, 4L);
+        FieldAccessor accessor = FieldAccessor.of(Metrics.class.getDeclaredField("total"));
+        assertThatThrownBy(() -> accessor.set(metrics, null))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> accessor.set(metrics, "text"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(accessor.getLong(metrics)).isEqualTo(2L);
+    }
+
+    private static class Constants {
+        private static final int VALUE = Integer.parseInt("42");
+    }
+}
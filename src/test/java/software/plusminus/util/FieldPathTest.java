@@ -0,0 +1,112 @@
+package software.plusminus.util;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class FieldPathTest {
+
+    @Test
+    public void ofIsCached() {
+        assertThat(FieldPath.of(Order.class, "customer.address.city"))
+                .isSameAs(FieldPath.of(Order.class, "customer.address.city"));
+    }
+
+    @Test
+    public void read() {
+        Order order = order("Kyiv");
+        FieldPath path = FieldPath.of(Order.class, "customer.address.city");
+        assertThat(path.read(order)).isEqualTo("Kyiv");
+        assertThat(path.read(order, String.class)).isEqualTo("Kyiv");
+    }
+
+    @Test
+    public void readIsNullSafe() {
+        Order order = order("Kyiv");
+        order.customer.address = null;
+        assertThat(FieldPath.of(Order.class, "customer.address.city").read(order)).isNull();
+    }
+
+    @Test
+    public void readResolvesInterfaceTypedFieldsByRuntimeClass() {
+        Order order = order("Kyiv");
+        order.note = new Note("fragile");
+        assertThat(FieldPath.of(Order.class, "note.text").read(order)).isEqualTo("fragile");
+    }
+
+    @Test
+    public void readAllFansOutOverCollections() {
+        Order order = order("Kyiv");
+        order.items = Arrays.asList(new Item("apple"), null, new Item("pear"));
+        List<Object> names = FieldPath.of(Order.class, "items.name").readAll(order);
+        assertThat(names).containsExactly("apple", "pear");
+    }
+
+    @Test
+    public void write() {
+        Order order = order("Kyiv");
+        FieldPath path = FieldPath.of(Order.class, "customer.address.city");
+        assertThat(path.write(order, "Lviv")).isTrue();
+        assertThat(order.customer.address.city).isEqualTo("Lviv");
+    }
+
+    @Test
+    public void writeReturnsFalseOnNullIntermediate() {
+        Order order = order("Kyiv");
+        order.customer = null;
+        assertThat(FieldPath.of(Order.class, "customer.address.city").write(order, "Lviv")).isFalse();
+    }
+
+    @Test
+    public void invalidPathIsRejected() {
+        assertThatThrownBy(() -> FieldPath.of(Order.class, "customer..city"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private Order order(String city) {
+        Address address = new Address();
+        address.city = city;
+        Customer customer = new Customer();
+        customer.address = address;
+        Order order = new Order();
+        order.customer = customer;
+        return order;
+    }
+
+    private interface Remark {
+    }
+
+    private static class Order {
+        private Customer customer;
+        private List<Item> items;
+        private Remark note;
+    }
+
+    private static class Customer {
+        private Address address;
+    }
+
+    private static class Address {
+        private String city;
+    }
+
+    private static class Item {
+        private final String name;
+
+        Item(String name) {
+            this.name = name;
+        }
+    }
+
+    private static class Note implements Remark {
+        private final String text;
+
+        Note(String text) {
+            this.text = text;
+        }
+    }
+}
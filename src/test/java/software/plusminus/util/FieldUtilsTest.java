@@ -1,15 +1,29 @@
 package software.plusminus.util;
 
 import org.junit.Test;
+import software.plusminus.util.helpers.ChildTestEntity;
 import software.plusminus.util.helpers.Id;
+import software.plusminus.util.helpers.Metrics;
+import software.plusminus.util.helpers.Node;
 import software.plusminus.util.helpers.TestEntity;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.Assume.assumeTrue;
 
 public class FieldUtilsTest {
 
@@ -29,6 +43,91 @@ public class FieldUtilsTest {
         assertThat(value).isNull();
     }
 
+    @Test
+    public void readPrimitives() throws Exception {
+        Metrics metrics = new Metrics(3, 1_000_000L, 2.5, true, null);
+        assertThat(FieldUtils.readInt(metrics, Metrics.class.getDeclaredField("count"))).isEqualTo(3);
+        assertThat(FieldUtils.readLong(metrics, Metrics.class.getDeclaredField("total"))).isEqualTo(1_000_000L);
+        assertThat(FieldUtils.readDouble(metrics, Metrics.class.getDeclaredField("average"))).isEqualTo(2.5);
+        assertThat(FieldUtils.readBoolean(metrics, Metrics.class.getDeclaredField("active"))).isTrue();
+    }
+
+    @Test
+    public void writePrimitives() throws Exception {
+        Metrics metrics = new Metrics(3, 1_000_000L, 2.5, true, null);
+        FieldUtils.writeInt(metrics, 4, Metrics.class.getDeclaredField("count"));
+        FieldUtils.writeLong(metrics, 2_000_000L, Metrics.class.getDeclaredField("total"));
+        FieldUtils.writeDouble(metrics, 3.5, Metrics.class.getDeclaredField("average"));
+        FieldUtils.writeBoolean(metrics, false, Metrics.class.getDeclaredField("active"));
+        assertThat(metrics.getCount()).isEqualTo(4);
+        assertThat(metrics.getTotal()).isEqualTo(2_000_000L);
+        assertThat(metrics.getAverage()).isEqualTo(3.5);
+        assertThat(metrics.isActive()).isFalse();
+    }
+
+    @Test
+    public void readLongDoesNotAllocate() throws Exception {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        assumeTrue(threadBean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) threadBean;
+        assumeTrue(allocationBean.isThreadAllocatedMemorySupported());
+        allocationBean.setThreadAllocatedMemoryEnabled(true);
+
+        Metrics metrics = new Metrics(3, 1_000_000L, 2.5, true, null);
+        Field field = Metrics.class.getDeclaredField("total");
+        long threadId = Thread.currentThread().getId();
+        int iterations = 100_000;
+        long sum = sumTotals(metrics, field, iterations);
+
+        long before = allocationBean.getThreadAllocatedBytes(threadId);
+        sum += sumTotals(metrics, field, iterations);
+        long allocated = allocationBean.getThreadAllocatedBytes(threadId) - before;
+
+        assertThat(sum).isEqualTo(2L * iterations * 1_000_000L);
+        /* Boxing each value would allocate at least 16 bytes per read */
+        assertThat(allocated).isLessThan(iterations);
+    }
+
+    @Test
+    public void readPrimitiveColumns() throws Exception {
+        List<Metrics> metrics = Arrays.asList(
+                new Metrics(1, 10L, 0.5, true, null),
+                new Metrics(2, 20L, 1.5, false, null));
+        assertThat(FieldUtils.readIntColumn(metrics, Metrics.class.getDeclaredField("count")))
+                .containsExactly(1, 2);
+        assertThat(FieldUtils.readLongColumn(metrics, "total")).containsExactly(10L, 20L);
+        assertThat(FieldUtils.readDoubleColumn(metrics, "average")).containsExactly(0.5, 1.5);
+    }
+
+    @Test
+    public void readColumnSkipsNullElements() {
+        List<TestEntity> entities = new LinkedList<>(Arrays.asList(new TestEntity(1L, "a"), null));
+        assertThat(FieldUtils.readColumn(entities, "myField")).containsExactly("a", null);
+    }
+
+    @Test
+    public void readColumnByNameResolvesInheritedFields() {
+        List<TestEntity> entities = Arrays.asList(new TestEntity(1L, "a"), new ChildTestEntity(2L, "b"));
+        assertThat(FieldUtils.readColumn(entities, "id")).containsExactly(1L, 2L);
+    }
+
+    @Test
+    public void readLongColumnInParallel() throws Exception {
+        List<Metrics> metrics = IntStream.range(0, 10_000)
+                .mapToObj(i -> new Metrics(i, i * 2L, i, true, null))
+                .collect(Collectors.toList());
+        long[] totals = FieldUtils.readLongColumn(metrics, Metrics.class.getDeclaredField("total"), true);
+        assertThat(totals).hasSize(10_000);
+        assertThat(LongStream.of(totals).sum()).isEqualTo(9_999L * 10_000L);
+    }
+
+    @Test
+    public void readColumnByUnknownNameFails() {
+        List<TestEntity> entities = Collections.singletonList(new TestEntity(1L, "a"));
+        assertThatThrownBy(() -> FieldUtils.readColumn(entities, "unknown"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
     @Test
     public void readFirst() {
         TestEntity entity = new TestEntity(7L, "text");
@@ -86,6 +185,32 @@ public class FieldUtilsTest {
         assertThat(field.get().getName()).isEqualTo("id");
     }
 
+    @Test
+    public void findFirstWithTypeAndAnnotationInParent() {
+        assertThat(FieldUtils.findFirstWithType(ChildTestEntity.class, Long.class).get().getName())
+                .isEqualTo("id");
+        assertThat(FieldUtils.findFirstWithAnnotation(ChildTestEntity.class, Id.class).get().getName())
+                .isEqualTo("id");
+    }
+
+    @Test
+    public void findFirstWithAnnotationReturnsEmptyWhenNoMatch() {
+        assertThat(FieldUtils.findFirstWithAnnotation(Node.class, Id.class)).isNotPresent();
+    }
+
+    @Test
+    public void findFirstLookupsAreServedFromTheClassIndex() {
+        Optional<Field> miss = FieldUtils.findFirstWithAnnotation(ChildTestEntity.class, Deprecated.class);
+        Optional<Field> hit = FieldUtils.findFirstWithAnnotation(ChildTestEntity.class, Id.class);
+
+        assertThat(miss).isNotPresent();
+        assertThat(FieldUtils.findFirstWithAnnotation(ChildTestEntity.class, Deprecated.class)).isSameAs(miss);
+        assertThat(hit).isPresent();
+        assertThat(FieldUtils.findFirstWithAnnotation(ChildTestEntity.class, Id.class)).isSameAs(hit);
+        assertThat(FieldUtils.findFirstWithType(ChildTestEntity.class, hit.get().getType()).get())
+                .isSameAs(hit.get());
+    }
+
     @Test
     public void findFirstReturnsEmptyWhenNoMatch() {
         Optional<Field> field = FieldUtils.findFirstWithType(TestEntity.class, Double.class);
@@ -99,6 +224,68 @@ public class FieldUtilsTest {
         assertThat(values).contains("text");
     }
 
+    @Test
+    public void getDeepFieldValuesHandlesDeepGraphs() {
+        Node root = chain(100_000);
+        Set<?> values = FieldUtils.getDeepFieldValues(root, f -> f.getType() == Node.class);
+        assertThat(values).hasSize(99_999);
+    }
+
+    @Test
+    public void getDeepFieldValuesComparesByIdentity() {
+        Holder holder = new Holder(Arrays.asList(new TestEntity(1L, "same"), new TestEntity(1L, "same")));
+        Set<?> values = FieldUtils.getDeepFieldValues(holder, f -> f.getName().equals("entities"));
+        assertThat(values).hasSize(2);
+    }
+
+    @Test
+    public void getDeepFieldValuesStopsAtMaxDepth() {
+        Node root = chain(10);
+        Set<?> values = FieldUtils.getDeepFieldValues(root, f -> f.getType() == Node.class,
+                3, Integer.MAX_VALUE, false);
+        assertThat(values).hasSize(3);
+    }
+
+    @Test
+    public void getDeepFieldValuesStopsAtMaxNodes() {
+        Node root = chain(10);
+        Set<?> values = FieldUtils.getDeepFieldValues(root, f -> f.getType() == Node.class,
+                Integer.MAX_VALUE, 5, false);
+        assertThat(values).hasSize(5);
+    }
+
+    @Test
+    public void getDeepFieldValuesInParallel() {
+        Node root = tree(14);
+        Set<?> sequential = FieldUtils.getDeepFieldValues(root, f -> f.getType() == Node.class);
+        Set<?> parallel = FieldUtils.getDeepFieldValues(root, f -> f.getType() == Node.class,
+                Integer.MAX_VALUE, Integer.MAX_VALUE, true);
+        assertThat(parallel).hasSize(sequential.size());
+        assertThat(parallel.containsAll(sequential)).isTrue();
+    }
+
+    @Test
+    public void getDeepFieldValuesInParallelRespectsMaxNodes() {
+        Node root = tree(14);
+        Set<?> values = FieldUtils.getDeepFieldValues(root, f -> f.getType() == Node.class,
+                Integer.MAX_VALUE, 1000, true);
+        assertThat(values).hasSize(1000);
+    }
+
+    @Test
+    public void getDeepFieldValuesInParallelWithSharedNodes() {
+        Node root = lattice(60);
+        Set<?> sequential = FieldUtils.getDeepFieldValues(root, f -> f.getType() == Node.class);
+        Set<?> parallel = FieldUtils.getDeepFieldValues(root, f -> f.getType() == Node.class,
+                Integer.MAX_VALUE, Integer.MAX_VALUE, true);
+        assertThat(parallel).hasSize(sequential.size());
+        for (int maxNodes = 1; maxNodes < sequential.size(); maxNodes += 7) {
+            Set<?> values = FieldUtils.getDeepFieldValues(root, f -> f.getType() == Node.class,
+                    Integer.MAX_VALUE, maxNodes, true);
+            assertThat(values).hasSize(maxNodes);
+        }
+    }
+
     @Test
     public void getFieldsStreamIncludesInheritedFields() {
         long count = FieldUtils.getFieldsStream(TestEntity.class).count();
@@ -112,6 +299,110 @@ public class FieldUtilsTest {
         assertThat(type).isEqualTo(String.class);
     }
 
+    @Test
+    public void diffFindsChangedFields() {
+        Metrics before = new Metrics(1, 2L, 3.0, true, 4L);
+        Metrics after = new Metrics(1, 5L, 3.0, false, 4L);
+
+        FieldPatch patch = FieldUtils.diff(before, after);
+
+        assertThat(patch.size()).isEqualTo(2);
+        assertThat(patch.getField(0).getName()).isEqualTo("total");
+        assertThat(patch.getOldValue(0)).isEqualTo(2L);
+        assertThat(patch.getNewValue(0)).isEqualTo(5L);
+        assertThat(patch.getField(1).getName()).isEqualTo("active");
+        assertThat(patch.getChangedFieldsMask()).isEqualTo(0b1010L);
+        assertThat(patch.isChanged(1)).isTrue();
+        assertThat(patch.isChanged(0)).isFalse();
+    }
+
+    @Test
+    public void diffOfEqualObjectsIsEmpty() {
+        FieldPatch patch = FieldUtils.diff(new Metrics(1, 2L, 3.0, true, 4L), new Metrics(1, 2L, 3.0, true, 4L));
+        assertThat(patch.isEmpty()).isTrue();
+        assertThat(patch.getChangedFieldsMask()).isZero();
+    }
+
+    @Test
+    public void applyWritesNewValues() {
+        Metrics before = new Metrics(1, 2L, 3.0, true, 4L);
+        Metrics after = new Metrics(1, 5L, 3.0, true, null);
+        Metrics target = new Metrics(7, 2L, 3.0, true, 4L);
+
+        FieldUtils.apply(FieldUtils.diff(before, after), target);
+
+        assertThat(target).isEqualTo(new Metrics(7, 5L, 3.0, true, null));
+    }
+
+    @Test
+    public void diffOfDifferentClassesFails() {
+        assertThatThrownBy(() -> FieldUtils.diff(new TestEntity(1L, "a"), new ChildTestEntity(1L, "a")))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void applyToFinalFieldFails() {
+        FieldPatch patch = FieldUtils.diff(new Holder(Collections.emptyList()),
+                new Holder(Collections.singletonList(new TestEntity(1L, "a"))));
+        assertThatThrownBy(() -> FieldUtils.apply(patch, new Holder(Collections.emptyList())))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    /* Every node below the root is shared by two parents */
+    private Node lattice(int levels) {
+        List<Node> level = Collections.singletonList(new Node("0"));
+        Node root = level.get(0);
+        for (int depth = 1; depth < levels; depth++) {
+            List<Node> next = new ArrayList<>();
+            for (int i = 0; i <= level.size(); i++) {
+                next.add(new Node(depth + "." + i));
+            }
+            for (int i = 0; i < level.size(); i++) {
+                level.get(i).setLeft(next.get(i));
+                level.get(i).setRight(next.get(i + 1));
+            }
+            level = next;
+        }
+        return root;
+    }
+
+    private Node chain(int length) {
+        Node root = new Node("0");
+        Node current = root;
+        for (int i = 1; i < length; i++) {
+            Node next = new Node(String.valueOf(i));
+            current.setLeft(next);
+            current = next;
+        }
+        return root;
+    }
+
+    private Node tree(int depth) {
+        Node node = new Node(String.valueOf(depth));
+        if (depth > 1) {
+            node.setLeft(tree(depth - 1));
+            node.setRight(tree(depth - 1));
+        }
+        return node;
+    }
+
+    private long sumTotals(Metrics metrics, Field field, int iterations) {
+        long sum = 0;
+        for (int i = 0; i < iterations; i++) {
+            sum += FieldUtils.readLong(metrics, field);
+        }
+        return sum;
+    }
+
+    @SuppressWarnings("unused")
+    private static class Holder {
+        private final List<TestEntity> entities;
+
+        Holder(List<TestEntity> entities) {
+            this.entities = entities;
+        }
+    }
+
     @SuppressWarnings("unused")
     private static class GenericHolder {
         private List<String> values;
@@ -5,9 +5,22 @@ import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.Assume.assumeTrue;
 
 public class FileUtilsTest {
 
@@ -30,4 +43,139 @@ public class FileUtilsTest {
         Path path = new File(folder.getRoot(), "missing.txt").toPath();
         assertThat(FileUtils.exists(path)).isFalse();
     }
+
+    @Test
+    public void map() throws Exception {
+        Path path = folder.newFile().toPath();
+        FileUtils.write(path, "mapped");
+
+        ByteBuffer buffer = FileUtils.map(path);
+
+        assertThat(buffer.isReadOnly()).isTrue();
+        assertThat(StandardCharsets.UTF_8.decode(buffer).toString()).isEqualTo("mapped");
+    }
+
+    @Test
+    public void mapEmptyFile() throws Exception {
+        Path path = folder.newFile().toPath();
+        assertThat(FileUtils.map(path).remaining()).isZero();
+    }
+
+    @Test
+    public void mapChunks() throws Exception {
+        Path path = folder.newFile().toPath();
+        FileUtils.write(path, "abcdefgh");
+
+        List<ByteBuffer> chunks = FileUtils.mapChunks(path, 3);
+
+        assertThat(chunks).hasSize(3);
+        assertThat(chunks.stream()
+                .map(chunk -> StandardCharsets.UTF_8.decode(chunk).toString())
+                .collect(Collectors.toList()))
+                .containsExactly("abc", "def", "gh");
+    }
+
+    @Test
+    public void mapTextDecodesAcrossBlocks() throws Exception {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            builder.append("a\u00e9\u20ac\ud83d\ude00");
+        }
+        String content = builder.toString();
+        Path path = folder.newFile().toPath();
+        FileUtils.write(path, content);
+
+        CharSequence text = FileUtils.mapText(path);
+
+        assertThat(text.length()).isEqualTo(content.length());
+        assertThat(text.charAt(0)).isEqualTo('a');
+        assertThat(text.charAt(content.length() - 1)).isEqualTo(content.charAt(content.length() - 1));
+        assertThat(text.subSequence(50000, 50010).toString()).isEqualTo(content.substring(50000, 50010));
+        assertThat(text.toString()).isEqualTo(content);
+    }
+
+    @Test
+    public void mapTextReplacesMalformedBytesAcrossBlocks() throws Exception {
+        byte[] bytes = new byte[64 * 1024 + 16];
+        Arrays.fill(bytes, (byte) 'a');
+        Arrays.fill(bytes, 64 * 1024 - 4, 64 * 1024 + 8, (byte) 0x80);
+        Path path = folder.newFile().toPath();
+        Files.write(path, bytes);
+
+        CharSequence text = FileUtils.mapText(path);
+
+        assertThat(text.length()).isEqualTo(bytes.length);
+        assertThat(text.charAt(64 * 1024)).isEqualTo('\ufffd');
+        assertThat(text.charAt(bytes.length - 1)).isEqualTo('a');
+    }
+
+    @Test
+    public void lines() throws Exception {
+        Path path = folder.newFile().toPath();
+        FileUtils.write(path, "first\r\nsecond\n\nl\u00e4st\n");
+
+        try (Stream<String> lines = FileUtils.lines(path)) {
+            assertThat(lines.collect(Collectors.toList())).containsExactly("first", "second", "", "l\u00e4st");
+        }
+    }
+
+    @Test
+    public void linesSpanChunks() throws Exception {
+        Path path = folder.newFile().toPath();
+        FileUtils.write(path, "first\nl\u00e4st");
+
+        List<String> lines = new ArrayList<>();
+        new MappedFile(path, 3).lines().forEachRemaining(lines::add);
+
+        assertThat(lines).containsExactly("first", "l\u00e4st");
+    }
+
+    @Test
+    public void writeAtomicallyReplacesContent() throws Exception {
+        File root = folder.newFolder();
+        Path path = new File(root, "nested/file.txt").toPath();
+        FileUtils.write(path, "old", FileUtils.Durability.NONE);
+
+        FileUtils.write(path, "n\u00e9w", FileUtils.Durability.DATA_AND_DIRECTORY);
+
+        assertThat(FileUtils.readString(path)).isEqualTo("n\u00e9w");
+        assertThat(path.getParent().toFile().list()).containsExactly("file.txt");
+    }
+
+    @Test
+    public void writeLargeContentDurably() throws Exception {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 50000; i++) {
+            builder.append("line \u20ac").append(i).append('\n');
+        }
+        String content = builder.toString();
+        Path path = folder.newFile().toPath();
+
+        FileUtils.write(path, content, FileUtils.Durability.DATA);
+
+        assertThat(FileUtils.readString(path)).isEqualTo(content);
+    }
+
+    @Test
+    public void writeAtomicallyKeepsPermissions() throws Exception {
+        Path path = folder.newFile().toPath();
+        assumeTrue(path.getFileSystem().supportedFileAttributeViews().contains("posix"));
+        Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rw-r-----");
+        Files.setPosixFilePermissions(path, permissions);
+
+        FileUtils.write(path, "new", FileUtils.Durability.NONE);
+
+        assertThat(Files.getPosixFilePermissions(path)).isEqualTo(permissions);
+    }
+
+    @Test
+    public void failedAtomicWriteLeavesNoTemporaryFile() throws Exception {
+        File root = folder.newFolder();
+        Path path = new File(root, "file.txt").toPath();
+
+        assertThatThrownBy(() -> FileUtils.write(path, null, FileUtils.Durability.NONE))
+                .isInstanceOf(NullPointerException.class);
+
+        assertThat(root.list()).isEmpty();
+    }
 }
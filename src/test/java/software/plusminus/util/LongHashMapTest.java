@@ -0,0 +1,48 @@
+package software.plusminus.util;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LongHashMapTest {
+
+    @Test
+    public void putGetRemove() {
+        LongHashMap<String> map = new LongHashMap<>();
+        assertThat(map.put(0, "zero")).isNull();
+        assertThat(map.put(7, "seven")).isNull();
+        assertThat(map.put(7, "SEVEN")).isEqualTo("seven");
+        assertThat(map.get(0)).isEqualTo("zero");
+        assertThat(map.get(7)).isEqualTo("SEVEN");
+        assertThat(map.get(8)).isNull();
+        assertThat(map.size()).isEqualTo(2);
+        assertThat(map.remove(0)).isEqualTo("zero");
+        assertThat(map.remove(7)).isEqualTo("SEVEN");
+        assertThat(map.containsKey(7)).isFalse();
+        assertThat(map.isEmpty()).isTrue();
+    }
+
+    @Test
+    public void behavesLikeHashMap() {
+        Random random = new Random(11);
+        LongHashMap<Integer> map = new LongHashMap<>(2);
+        Map<Long, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 100_000; i++) {
+            long key = random.nextInt(3000) - 1500;
+            if (random.nextInt(3) > 0) {
+                assertThat(map.put(key, i)).isEqualTo(expected.put(key, i));
+            } else {
+                assertThat(map.remove(key)).isEqualTo(expected.remove(key));
+            }
+        }
+        assertThat(map.size()).isEqualTo(expected.size());
+        for (long key = -1500; key < 1500; key++) {
+            assertThat(map.get(key)).isEqualTo(expected.get(key));
+        }
+        assertThat(map.values()).hasSize(expected.size());
+    }
+}
@@ -0,0 +1,64 @@
+package software.plusminus.util;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LongHashSetTest {
+
+    @Test
+    public void addContainsRemove() {
+        LongHashSet set = new LongHashSet();
+        assertThat(set.add(0)).isTrue();
+        assertThat(set.add(5)).isTrue();
+        assertThat(set.add(5)).isFalse();
+        assertThat(set.contains(0)).isTrue();
+        assertThat(set.contains(5)).isTrue();
+        assertThat(set.contains(6)).isFalse();
+        assertThat(set.size()).isEqualTo(2);
+        assertThat(set.remove(0)).isTrue();
+        assertThat(set.remove(5)).isTrue();
+        assertThat(set.remove(5)).isFalse();
+        assertThat(set.isEmpty()).isTrue();
+    }
+
+    @Test
+    public void behavesLikeHashSet() {
+        Random random = new Random(7);
+        LongHashSet set = new LongHashSet(4);
+        Set<Long> expected = new HashSet<>();
+        for (int i = 0; i < 100_000; i++) {
+            long value = random.nextInt(5000) - 2500;
+            if (random.nextBoolean()) {
+                assertThat(set.add(value)).isEqualTo(expected.add(value));
+            } else {
+                assertThat(set.remove(value)).isEqualTo(expected.remove(value));
+            }
+        }
+        assertThat(set.size()).isEqualTo(expected.size());
+        for (long value = -2500; value < 2500; value++) {
+            assertThat(set.contains(value)).isEqualTo(expected.contains(value));
+        }
+        assertThat(set.toArray()).hasSize(expected.size());
+    }
+
+    @Test
+    public void equalsIgnoresInsertionOrderAndCapacity() {
+        LongHashSet first = new LongHashSet();
+        first.addAll(new long[] {0, 5, -7, 1L << 40});
+        LongHashSet second = new LongHashSet(1000);
+        second.addAll(new long[] {1L << 40, -7, 5});
+
+        assertThat(first).isNotEqualTo(second);
+        second.add(0);
+        assertThat(first).isEqualTo(second);
+        assertThat(first.hashCode()).isEqualTo(second.hashCode());
+        second.remove(5);
+        second.add(6);
+        assertThat(first).isNotEqualTo(second);
+    }
+}
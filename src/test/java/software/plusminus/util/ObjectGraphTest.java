@@ -0,0 +1,182 @@
+package software.plusminus.util;
+
+import org.junit.Test;
+import software.plusminus.util.helpers.Node;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ObjectGraphTest {
+
+    @Test
+    public void streamVisitsDistinctObjectsInPreOrder() {
+        Node shared = new Node("shared");
+        Node left = new Node("left");
+        Node right = new Node("right");
+        Node root = new Node("root");
+        root.setLeft(left);
+        root.setRight(right);
+        left.setLeft(shared);
+        right.setLeft(shared);
+        shared.setLeft(root);
+
+        List<Object> objects = ObjectGraph.stream(root).collect(Collectors.toList());
+
+        assertThat(objects).containsExactly(root, left, shared, right);
+    }
+
+    @Test
+    public void streamSkipsLeaves() {
+        Node node = new Node("node");
+        List<Object> list = Arrays.asList("text", 1L, node, null);
+        assertThat(ObjectGraph.stream(list).collect(Collectors.toList())).containsExactly(list, node);
+        assertThat(ObjectGraph.stream("text").count()).isEqualTo(0L);
+        assertThat(ObjectGraph.stream(null).count()).isEqualTo(0L);
+    }
+
+    @Test
+    public void streamIsLazy() {
+        Node root = chain(1_000_000);
+        List<Object> firstThree = ObjectGraph.stream(root).limit(3).collect(Collectors.toList());
+        assertThat(firstThree).hasSize(3);
+    }
+
+    @Test
+    public void streamStopsAtMaxDepth() {
+        Node root = chain(10);
+        assertThat(ObjectGraph.stream(root, 2).count()).isEqualTo(3L);
+    }
+
+    @Test
+    public void maxDepthUsesShortestPath() {
+        Node root = new Node("root");
+        Node first = new Node("first");
+        Node second = new Node("second");
+        Node third = new Node("third");
+        root.setLeft(first);
+        first.setLeft(second);
+        second.setLeft(third);
+        root.setRight(second);
+
+        assertThat(ObjectGraph.stream(root, 2).collect(Collectors.toList()))
+                .containsExactly(root, first, second, third);
+
+        Map<String, Integer> depths = new HashMap<>();
+        List<String> exits = new ArrayList<>();
+        ObjectGraph.walk(root, 2, new ObjectGraph.Visitor() {
+
+            @Override
+            public ObjectGraph.Visit enter(Object object, int depth) {
+                depths.put(((Node) object).getName(), depth);
+                return ObjectGraph.Visit.CONTINUE;
+            }
+
+            @Override
+            public void exit(Object object, int depth) {
+                exits.add(((Node) object).getName());
+            }
+        });
+        assertThat(depths).containsEntry("third", 2);
+        assertThat(exits).containsExactly("second", "first", "third", "root");
+    }
+
+    @Test
+    public void walkCanSkipChildren() {
+        Node root = chain(10);
+        List<Object> entered = new ArrayList<>();
+        boolean completed = ObjectGraph.walk(root, new ObjectGraph.Visitor() {
+            @Override
+            public ObjectGraph.Visit enter(Object object, int depth) {
+                entered.add(object);
+                return depth == 1 ? ObjectGraph.Visit.SKIP_CHILDREN : ObjectGraph.Visit.CONTINUE;
+            }
+        });
+        assertThat(completed).isTrue();
+        assertThat(entered).containsExactly(root, root.getLeft());
+    }
+
+    @Test
+    public void walkCanTerminate() {
+        Node root = chain(10);
+        List<Object> entered = new ArrayList<>();
+        boolean completed = ObjectGraph.walk(root, new ObjectGraph.Visitor() {
+            @Override
+            public ObjectGraph.Visit enter(Object object, int depth) {
+                entered.add(object);
+                return depth == 4 ? ObjectGraph.Visit.TERMINATE : ObjectGraph.Visit.CONTINUE;
+            }
+        });
+        assertThat(completed).isFalse();
+        assertThat(entered).hasSize(5);
+    }
+
+    @Test
+    public void walkReportsExitAndRevisits() {
+        Node child = new Node("child");
+        Node root = new Node("root");
+        root.setLeft(child);
+        root.setRight(child);
+        child.setLeft(root);
+        List<String> events = new ArrayList<>();
+        ObjectGraph.walk(root, new ObjectGraph.Visitor() {
+            @Override
+            public void exit(Object object, int depth) {
+                events.add("exit " + ((Node) object).getName());
+            }
+
+            @Override
+            public ObjectGraph.Visit revisit(Object object, boolean onPath) {
+                events.add("revisit " + ((Node) object).getName() + " " + onPath);
+                return ObjectGraph.Visit.CONTINUE;
+            }
+        });
+        assertThat(events).containsExactly("revisit root true", "exit child", "revisit child false", "exit root");
+    }
+
+    @Test
+    public void collectParallelFindsSameObjectsAsStream() {
+        Random random = new Random(42);
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < 200_000; i++) {
+            nodes.add(new Node(String.valueOf(i)));
+        }
+        for (Node node : nodes) {
+            node.setLeft(nodes.get(random.nextInt(nodes.size())));
+            node.setRight(nodes.get(random.nextInt(nodes.size())));
+        }
+        Map<String, Object> root = new HashMap<>();
+        root.put("nodes", nodes.subList(0, 1000));
+        root.put("first", nodes.get(0));
+
+        Set<Object> sequential = ObjectGraph.stream(root).collect(Collectors.toSet());
+        Set<Object> parallel = ObjectGraph.collectParallel(root);
+
+        assertThat(parallel).hasSize(sequential.size());
+        assertThat(sequential.containsAll(parallel)).isTrue();
+    }
+
+    @Test
+    public void collectParallelOnLeaf() {
+        assertThat(ObjectGraph.collectParallel("text")).isEmpty();
+        assertThat(ObjectGraph.collectParallel(null)).isEmpty();
+    }
+
+    private Node chain(int length) {
+        Node root = new Node("0");
+        Node current = root;
+        for (int i = 1; i < length; i++) {
+            Node next = new Node(String.valueOf(i));
+            current.setLeft(next);
+            current = next;
+        }
+        return root;
+    }
+}
@@ -0,0 +1,92 @@
+package software.plusminus.util;
+
+import org.junit.Test;
+import software.plusminus.util.helpers.Metrics;
+import software.plusminus.util.helpers.Node;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ObjectSizeTest {
+
+    @Test
+    public void shallowSizeOfObject() {
+        assertThat(ObjectSize.shallowSize(new Object())).isEqualTo(16L);
+    }
+
+    @Test
+    public void shallowSizeIsAligned() {
+        assertThat(ObjectSize.shallowSize(new byte[3]) % 8).isZero();
+        assertThat(ObjectSize.shallowSize(new Metrics(1, 2L, 3.0, true, null)) % 8).isZero();
+    }
+
+    @Test
+    public void shallowSizeOfArrayGrowsWithLength() {
+        assertThat(ObjectSize.shallowSize(new long[10]) - ObjectSize.shallowSize(new long[0])).isEqualTo(80L);
+    }
+
+    @Test
+    public void deepSizeCountsSharedObjectsOnce() {
+        Node shared = new Node(null);
+        Node root = new Node(null);
+        root.setLeft(shared);
+        root.setRight(shared);
+        shared.setLeft(root);
+
+        assertThat(ObjectSize.deepSize(root))
+                .isEqualTo(ObjectSize.shallowSize(root) + ObjectSize.shallowSize(shared));
+    }
+
+    @Test
+    public void deepSizeIncludesStrings() {
+        Node node = new Node("some name");
+        assertThat(ObjectSize.deepSize(node)).isGreaterThan(ObjectSize.shallowSize(node)
+                + ObjectSize.shallowSize("some name"));
+    }
+
+    @Test
+    public void deepSizeOfNull() {
+        assertThat(ObjectSize.deepSize(null)).isZero();
+    }
+
+    @Test
+    public void sampledDeepSizeIsCloseToExact() {
+        List<Metrics> list = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            list.add(new Metrics(i, i, i, true, (long) i));
+        }
+        long exact = ObjectSize.deepSize(list, Integer.MAX_VALUE);
+        long sampled = ObjectSize.deepSize(list, 100);
+        assertThat(Math.abs(sampled - exact)).isLessThan(exact / 100);
+    }
+
+    @Test
+    public void sampledDeepSizeCountsObjectSharedByAllElementsOnce() {
+        Node big = new Node(new String(new char[100_000]));
+        List<Node> list = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            Node node = new Node(null);
+            node.setLeft(big);
+            list.add(node);
+        }
+        long exact = ObjectSize.deepSize(list, Integer.MAX_VALUE);
+        long sampled = ObjectSize.deepSize(list, 100);
+        assertThat(Math.abs(sampled - exact)).isLessThan(exact / 100);
+    }
+
+    @Test
+    public void sampledDeepSizeDoesNotCountUnsampledElementsAgain() {
+        List<Node> list = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            list.add(new Node(null));
+        }
+        List<Object> root = new ArrayList<>();
+        root.add(list);
+        root.add(list.get(list.size() - 1));
+        long exact = ObjectSize.deepSize(root, Integer.MAX_VALUE);
+        long sampled = ObjectSize.deepSize(root, 100);
+        assertThat(sampled).isEqualTo(exact);
+    }
+}
@@ -1,21 +1,46 @@
 package software.plusminus.util;
 
+import org.junit.After;
 import org.junit.Test;
+import software.plusminus.util.exception.ConstructionException;
+import software.plusminus.util.helpers.ChildTestEntity;
+import software.plusminus.util.helpers.Container;
+import software.plusminus.util.helpers.Metrics;
 import software.plusminus.util.helpers.Node;
 import software.plusminus.util.helpers.TestEntity;
 
+import java.net.URL;
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.TreeSet;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
 
 public class ObjectUtilsTest {
 
+    private final TestProxyResolver proxyResolver = new TestProxyResolver();
+
+    @After
+    public void removeProxyResolver() {
+        ObjectUtils.removeProxyResolver(proxyResolver);
+    }
+
     @Test
     public void containsCircularReferencesOnStringCollection() {
         List<String> list = Arrays.asList("One", "Two");
@@ -75,6 +100,48 @@ public class ObjectUtilsTest {
         assertTrue(ObjectUtils.containsCircularReferences(map));
     }
 
+    @Test
+    public void containsCircularReferencesOnDeepChain() {
+        Node root = new Node("0");
+        Node current = root;
+        for (int i = 1; i < 100_000; i++) {
+            Node next = new Node(String.valueOf(i));
+            current.setLeft(next);
+            current = next;
+        }
+        assertFalse(ObjectUtils.containsCircularReferences(root));
+        current.setLeft(root);
+        assertTrue(ObjectUtils.containsCircularReferences(root));
+    }
+
+    @Test(timeout = 10_000)
+    public void containsCircularReferencesTraversesSharedSubgraphsOnce() {
+        Node left = new Node("left");
+        Node right = new Node("right");
+        Node root = new Node("root");
+        root.setLeft(left);
+        root.setRight(right);
+        for (int i = 0; i < 100; i++) {
+            Node nextLeft = new Node("left" + i);
+            Node nextRight = new Node("right" + i);
+            left.setLeft(nextLeft);
+            left.setRight(nextRight);
+            right.setLeft(nextLeft);
+            right.setRight(nextRight);
+            left = nextLeft;
+            right = nextRight;
+        }
+        assertFalse(ObjectUtils.containsCircularReferences(root));
+    }
+
+    @Test
+    public void referencePlanSkipsLeafFields() {
+        assertThat(ReferencePlan.of(TestEntity.class).getFields()).isEmpty();
+        assertThat(ReferencePlan.of(Node.class).getFields()).hasSize(2);
+        assertTrue(ReferencePlan.of(String.class).isLeaf());
+        assertTrue(ReferencePlan.of(TestEnum.class).isLeaf());
+    }
+
     @Test
     public void findReferencesIgnoresNullElements() {
         Node node = new Node("root");
@@ -93,6 +160,18 @@ public class ObjectUtilsTest {
         assertThat(references).contains(root, shared);
     }
 
+    @Test
+    public void findReferencesInParallel() {
+        Node shared = new Node("shared");
+        Node root = new Node("root");
+        root.setLeft(shared);
+        root.setRight(shared);
+        shared.setLeft(root);
+        Set<Object> references = ObjectUtils.findReferences(Arrays.asList(root, shared), true);
+        assertThat(references).hasSize(3);
+        assertThat(references).contains(root, shared);
+    }
+
     @Test
     public void toMap() {
         TestEntity entity = new TestEntity(7L, "text");
@@ -100,6 +179,51 @@ public class ObjectUtilsTest {
         assertThat(map).containsEntry("myField", "text");
     }
 
+    @Test
+    public void toMapReadsLazily() {
+        TestEntity entity = new TestEntity(7L, "text");
+        Map<String, Object> map = ObjectUtils.toMap(entity);
+        entity.setMyField("changed");
+        assertThat(map).containsEntry("myField", "changed")
+                .containsEntry("id", 7L)
+                .doesNotContainKey("unknown");
+    }
+
+    @Test
+    public void toMapWritesThroughSetters() {
+        TestEntity entity = new TestEntity(7L, "text");
+        Map<String, Object> map = ObjectUtils.toMap(entity);
+        Object previous = map.put("myField", "changed");
+        assertThat(previous).isEqualTo("text");
+        assertThat(entity.getMyField()).isEqualTo("changed");
+    }
+
+    @Test
+    public void toMapConvertsValuesLikeBeanMap() {
+        Metrics metrics = new Metrics();
+        Map<String, Object> map = ObjectUtils.toMap(metrics);
+
+        map.put("count", "3");
+        map.put("total", 4);
+        map.put("active", "true");
+        map.put("boxedTotal", "5");
+
+        assertThat(metrics).isEqualTo(new Metrics(3, 4L, 0.0, true, 5L));
+    }
+
+    @Test
+    public void toSnapshotMap() {
+        Metrics metrics = new Metrics(3, 4L, 2.5, true, null);
+        Map<String, Object> snapshot = ObjectUtils.toSnapshotMap(metrics);
+        metrics.setCount(10);
+        assertThat(snapshot).containsEntry("count", 3)
+                .containsEntry("total", 4L)
+                .containsEntry("average", 2.5)
+                .containsEntry("active", true)
+                .containsEntry("boxedTotal", null);
+        assertThat(snapshot).hasSize(6);
+    }
+
     @Test
     public void getNullPropertyNames() {
         TestEntity entity = new TestEntity(null, "text");
@@ -108,6 +232,186 @@ public class ObjectUtilsTest {
                 .doesNotContain("myField");
     }
 
+    @Test
+    public void getNullPropertiesReusesBitSet() {
+        BeanProperties properties = BeanProperties.of(TestEntity.class);
+        BitSet nulls = new BitSet();
+        nulls.set(63);
+
+        ObjectUtils.getNullProperties(new TestEntity(null, "text"), nulls);
+
+        assertThat(nulls.cardinality()).isEqualTo(1);
+        assertThat(nulls.get(properties.indexOf("id"))).isTrue();
+    }
+
+    @Test
+    public void getNullPropertiesMask() {
+        BeanProperties properties = BeanProperties.of(TestEntity.class);
+        long mask = ObjectUtils.getNullPropertiesMask(new TestEntity(null, null));
+        assertThat(mask).isEqualTo((1L << properties.indexOf("id")) | (1L << properties.indexOf("myField")));
+    }
+
+    @Test
+    public void copyNonNullProperties() {
+        TestEntity source = new TestEntity(null, "changed");
+        TestEntity target = new TestEntity(7L, "text");
+        ObjectUtils.copyNonNullProperties(source, target);
+        assertThat(target.getId()).isEqualTo(7L);
+        assertThat(target.getMyField()).isEqualTo("changed");
+    }
+
+    @Test
+    public void copyNonNullPropertiesBetweenClasses() {
+        ChildTestEntity source = new ChildTestEntity(5L, null);
+        TestEntity target = new TestEntity(7L, "text");
+        ObjectUtils.copyNonNullProperties(source, target);
+        assertThat(target.getId()).isEqualTo(5L);
+        assertThat(target.getMyField()).isEqualTo("text");
+    }
+
+    @Test
+    public void deepCopyPreservesCyclesAndSharedReferences() {
+        Node shared = new Node("shared");
+        Node root = new Node("root");
+        root.setLeft(shared);
+        root.setRight(shared);
+        shared.setLeft(root);
+
+        Node copy = ObjectUtils.deepCopy(root);
+
+        assertThat(copy).isNotSameAs(root);
+        assertThat(copy.getName()).isSameAs(root.getName());
+        assertThat(copy.getLeft()).isNotSameAs(shared);
+        assertThat(copy.getLeft()).isSameAs(copy.getRight());
+        assertThat(copy.getLeft().getLeft()).isSameAs(copy);
+    }
+
+    @Test
+    public void deepCopyCopiesCollectionsMapsAndArrays() {
+        Node node = new Node("node");
+        Container container = new Container();
+        container.getNodes().add(node);
+        container.getMetrics().add(new Metrics(1, 2L, 3.0, true, 4L));
+        container.getNodesByName().put("node", node);
+        container.setNodeArray(new Node[]{node, null});
+        container.setNumbers(new int[]{1, 2});
+        container.setDate(LocalDate.of(2021, 1, 1));
+        container.setVersion(5L);
+
+        Container copy = ObjectUtils.deepCopy(container);
+
+        Node nodeCopy = copy.getNodes().get(0);
+        assertThat(nodeCopy).isNotSameAs(node);
+        assertThat(nodeCopy.getName()).isEqualTo("node");
+        assertThat(copy.getNodesByName().get("node")).isSameAs(nodeCopy);
+        assertThat(copy.getNodeArray()).containsExactly(nodeCopy, null);
+        assertThat(copy.getNumbers()).containsExactly(1, 2);
+        assertThat(copy.getNumbers()).isNotSameAs(container.getNumbers());
+        assertThat(copy.getMetrics()).isNotSameAs(container.getMetrics());
+        assertThat(copy.getMetrics()).containsExactly(new Metrics(1, 2L, 3.0, true, 4L));
+        assertThat(copy.getDate()).isSameAs(container.getDate());
+        assertThat(copy.getVersion()).isEqualTo(5L);
+    }
+
+    @Test
+    public void deepCopyOfUnmodifiableList() {
+        List<Node> list = Collections.unmodifiableList(Arrays.asList(new Node("a"), new Node("b")));
+        List<Node> copy = ObjectUtils.deepCopy(list);
+        assertThat(copy).hasSize(2);
+        assertThat(copy.get(0).getName()).isEqualTo("a");
+        assertThat(copy.get(0)).isNotSameAs(list.get(0));
+    }
+
+    @Test
+    public void deepCopyOfLongChain() {
+        Node root = new Node("0");
+        Node last = root;
+        for (int i = 1; i < 100_000; i++) {
+            Node next = new Node(String.valueOf(i));
+            last.setLeft(next);
+            last = next;
+        }
+        Node copy = ObjectUtils.deepCopy(root);
+        assertThat(ObjectGraph.stream(copy).count()).isEqualTo(100_000L);
+    }
+
+    @Test(expected = ConstructionException.class)
+    public void deepCopyWithoutNoArgConstructor() {
+        ObjectUtils.deepCopy(new TestEntity(1L, "text"));
+    }
+
+    @Test
+    public void deepCopySharesImmutables() {
+        assertThat(ObjectUtils.deepCopy("text")).isEqualTo("text");
+        assertThat(ObjectUtils.deepCopy((Object) null)).isNull();
+    }
+
+    @Test
+    public void deepCopyClonesMutableJdkTypes() {
+        Date date = new Date(5L);
+        List<Object> list = new ArrayList<>(Arrays.asList(date, date));
+
+        List<Object> copy = ObjectUtils.deepCopy(list);
+
+        assertThat(copy.get(0)).isEqualTo(date).isNotSameAs(date);
+        assertThat(copy.get(1)).isSameAs(copy.get(0));
+    }
+
+    @Test
+    public void deepCopyCopiesOptionalValues() {
+        Node node = new Node("node");
+        List<Object> list = new ArrayList<>(Arrays.asList(Optional.of(node), Optional.empty(), node));
+
+        List<Object> copy = ObjectUtils.deepCopy(list);
+
+        Node nodeCopy = ((Optional<?>) copy.get(0)).map(Node.class::cast).orElse(null);
+        assertThat(nodeCopy).isNotNull().isNotSameAs(node);
+        assertThat(nodeCopy.getName()).isEqualTo("node");
+        assertThat(copy.get(2)).isSameAs(nodeCopy);
+        assertThat(copy.get(1)).isEqualTo(Optional.empty());
+    }
+
+    @Test
+    public void deepCopyDoesNotShareUrls() throws Exception {
+        URL url = new URL("http://example.com/path");
+        List<Object> copy = ObjectUtils.deepCopy(new ArrayList<>(Collections.singletonList(url)));
+        assertThat(copy.get(0)).isNotSameAs(url);
+        assertThat(copy.get(0).toString()).isEqualTo(url.toString());
+    }
+
+    @Test(expected = ConstructionException.class)
+    public void deepCopyRejectsUncloneableMutableJdkTypes() {
+        ObjectUtils.deepCopy(new ArrayList<>(Collections.singletonList(new StringBuilder("text"))));
+    }
+
+    @Test
+    public void deepCopyKeepsComparators() {
+        PriorityQueue<String> queue = new PriorityQueue<>(Comparator.reverseOrder());
+        queue.addAll(Arrays.asList("a", "c", "b"));
+        TreeSet<String> set = new TreeSet<>(Comparator.reverseOrder());
+        set.addAll(Arrays.asList("a", "c", "b"));
+
+        PriorityQueue<String> queueCopy = ObjectUtils.deepCopy(queue);
+        TreeSet<String> setCopy = ObjectUtils.deepCopy(set);
+
+        assertThat(queueCopy.comparator()).isSameAs(queue.comparator());
+        assertThat(queueCopy.poll()).isEqualTo("c");
+        assertThat(setCopy.comparator()).isSameAs(set.comparator());
+        assertThat(setCopy).containsExactly("c", "b", "a");
+    }
+
+    @Test
+    public void deepCopyFillsContainersAfterTheirContents() {
+        Set<String> inner = new HashSet<>(Collections.singleton("a"));
+        Set<Set<String>> outer = new HashSet<>(Collections.singleton(inner));
+        List<Object> list = Arrays.asList(inner, outer);
+
+        List<Object> copy = ObjectUtils.deepCopy(list);
+
+        assertThat((Set<?>) copy.get(1)).contains(copy.get(0));
+        assertThat(((Set<?>) copy.get(1)).contains(inner)).isTrue();
+    }
+
     @Test
     public void equalsMethodIsOverriddenTrue() {
         TestEntity entity = new TestEntity(7L, "text");
@@ -125,6 +429,82 @@ public class ObjectUtilsTest {
         assertThat(ObjectUtils.unproxy(object)).isSameAs(object);
     }
 
+    @Test
+    public void unproxyWithResolver() {
+        ObjectUtils.addProxyResolver(proxyResolver);
+        TestEntity target = new TestEntity(7L, "text");
+        TestProxy proxy = new TestProxy(new TestProxy(target));
+        assertThat(ObjectUtils.unproxy(proxy)).isSameAs(target);
+    }
+
+    @Test
+    public void unproxyUnresolvedProxyReturnsSameObject() {
+        ObjectUtils.addProxyResolver(proxyResolver);
+        TestProxy proxy = new TestProxy(null);
+        assertThat(ObjectUtils.unproxy(proxy)).isSameAs(proxy);
+    }
+
+    @Test
+    public void removedProxyResolverIsNotUsed() {
+        ObjectUtils.addProxyResolver(proxyResolver);
+        assertThat(ObjectUtils.removeProxyResolver(proxyResolver)).isTrue();
+        TestProxy proxy = new TestProxy(new TestEntity(7L, "text"));
+        assertThat(ObjectUtils.unproxy(proxy)).isSameAs(proxy);
+        assertThat(ObjectUtils.removeProxyResolver(proxyResolver)).isFalse();
+    }
+
+    @Test
+    public void unproxyNull() {
+        assertThat(ObjectUtils.unproxy((Object) null)).isNull();
+    }
+
+    @Test
+    public void addedProxyResolverIsUsedForPreviouslyCheckedClass() {
+        TestEntity target = new TestEntity(7L, "text");
+        TestProxy proxy = new TestProxy(target);
+        assertThat(ObjectUtils.unproxy(proxy)).isSameAs(proxy);
+        ObjectUtils.addProxyResolver(proxyResolver);
+        assertThat(ObjectUtils.unproxy(proxy)).isSameAs(target);
+    }
+
+    @Test
+    public void springAopProxyResolverRequiresSpringAop() {
+        assumeTrue(!isPresent("org.springframework.aop.framework.Advised"));
+        assertThatThrownBy(ObjectUtils::springAopProxyResolver)
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    private static boolean isPresent(String className) {
+        try {
+            Class.forName(className);
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    private static final class TestProxy {
+
+        private final Object target;
+
+        private TestProxy(Object target) {
+            this.target = target;
+        }
+    }
+
+    private static final class TestProxyResolver implements ProxyResolver {
+
+        @Override
+        public boolean isProxyClass(Class<?> type) {
+            return type == TestProxy.class;
+        }
+
+        @Override
+        public Object getTarget(Object proxy) {
+            return ((TestProxy) proxy).target;
+        }
+    }
+
     private enum TestEnum {
         ONE, TWO
     }
@@ -0,0 +1,84 @@
+package software.plusminus.util;
+
+import org.junit.Test;
+import software.plusminus.util.exception.FileException;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ResourceCacheTest {
+
+    @Test
+    public void cachesContent() {
+        ResourceCache cache = new ResourceCache(1024);
+        String first = cache.getString("test-resource.txt");
+        String second = cache.getString("test-resource.txt");
+
+        assertThat(first).isEqualTo("Hello Resource");
+        assertThat(second).isSameAs(first);
+        assertThat(cache.getMissCount()).isEqualTo(1L);
+        assertThat(cache.getHitCount()).isEqualTo(1L);
+        assertThat(cache.getBytes()).isEqualTo(28L);
+    }
+
+    @Test
+    public void evictsWhenOverBudget() {
+        ResourceCache cache = new ResourceCache(20, true);
+        cache.getString("test-resource.txt");
+        cache.getString("second-resource.txt");
+        cache.getString("/test-resource.txt");
+        cache.getString("/second-resource.txt");
+
+        assertThat(cache.getMissCount()).isEqualTo(4L);
+        assertThat(cache.getEvictionCount()).isEqualTo(3L);
+        assertThat(cache.getBytes()).isEqualTo(15L);
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        ResourceCache cache = new ResourceCache(30, true);
+        cache.getString("test-resource.txt");
+        cache.getString("second-resource.txt");
+        cache.getString("test-resource.txt");
+        cache.getString("third-resource.txt");
+        cache.getString("test-resource.txt");
+
+        assertThat(cache.getEvictionCount()).isEqualTo(1L);
+        assertThat(cache.getHitCount()).isEqualTo(2L);
+        assertThat(cache.getBytes()).isEqualTo(19L);
+    }
+
+    @Test
+    public void compactContentIsDecodedOnAccess() {
+        ResourceCache cache = new ResourceCache(1024, true);
+        assertThat(cache.getString("test-resource.txt")).isEqualTo("Hello Resource");
+        assertThat(cache.getBytes()).isEqualTo(14L);
+        assertThat(StandardCharsets.UTF_8.decode(cache.getByteBuffer("test-resource.txt")).toString())
+                .isEqualTo("Hello Resource");
+        assertThat(cache.getHitCount()).isEqualTo(1L);
+    }
+
+    @Test
+    public void doesNotCacheResourcesOverBudget() {
+        ResourceCache cache = new ResourceCache(10);
+        assertThat(cache.getString("test-resource.txt")).isEqualTo("Hello Resource");
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    public void invalidate() {
+        ResourceCache cache = new ResourceCache(1024);
+        cache.getString("test-resource.txt");
+        cache.invalidate("test-resource.txt");
+        assertThat(cache.size()).isZero();
+        assertThat(cache.getBytes()).isZero();
+    }
+
+    @Test
+    public void missingResource() {
+        assertThatThrownBy(() -> new ResourceCache(1024).getString("missing-resource.txt"))
+                .isInstanceOf(FileException.class);
+    }
+}
@@ -3,6 +3,19 @@ package software.plusminus.util;
 import org.junit.Test;
 import software.plusminus.util.exception.FileException;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
@@ -29,6 +42,34 @@ public class ResourceUtilsTest {
         assertThat(ResourceUtils.isResource("")).isFalse();
     }
 
+    @Test
+    public void isResourceForDirectory() {
+        assertThat(ResourceUtils.isResource("templates")).isTrue();
+        assertThat(ResourceUtils.isResource("templates/hello.txt")).isTrue();
+    }
+
+    @Test
+    public void isResourceForRepeatedMiss() throws Exception {
+        Path root = Paths.get(ResourceUtils.class.getResource("/test-resource.txt").toURI()).getParent();
+        Path late = root.resolve("late-resource.txt");
+        assertThat(ResourceUtils.isResource("late-resource.txt")).isFalse();
+        try {
+            Files.write(late, new byte[0]);
+            assertThat(ResourceUtils.class.getResource("/late-resource.txt")).isNotNull();
+            assertThat(ResourceUtils.isResource("/late-resource.txt")).isFalse();
+        } finally {
+            Files.deleteIfExists(late);
+        }
+    }
+
+    @Test
+    public void listResources() {
+        assertThat(ResourceUtils.listResources("templates")).containsExactly("templates/hello.txt");
+        assertThat(ResourceUtils.listResources("/templates/")).containsExactly("templates/hello.txt");
+        assertThat(ResourceUtils.listResources("")).contains("test-resource.txt", "templates/hello.txt");
+        assertThat(ResourceUtils.listResources("no-such-directory")).isEmpty();
+    }
+
     @Test
     public void toStringReadsContent() {
         assertThat(ResourceUtils.toString("test-resource.txt")).isEqualTo("Hello Resource");
@@ -49,4 +90,79 @@ public class ResourceUtilsTest {
         assertThatThrownBy(() -> ResourceUtils.toString("missing-resource.txt"))
                 .isInstanceOf(FileException.class);
     }
+
+    @Test
+    public void readBytes() {
+        assertThat(ResourceUtils.readBytes("test-resource.txt"))
+                .isEqualTo("Hello Resource".getBytes(StandardCharsets.UTF_8));
+        assertThat(ResourceUtils.readBytes("empty-resource.txt")).isEmpty();
+    }
+
+    @Test
+    public void readByteBuffer() {
+        ByteBuffer buffer = ResourceUtils.readByteBuffer("test-resource.txt");
+        assertThat(buffer.remaining()).isEqualTo(14);
+        assertThat(buffer.get(0)).isEqualTo((byte) 'H');
+    }
+
+    @Test
+    public void readBytesThrowsForMissingResource() {
+        assertThatThrownBy(() -> ResourceUtils.readBytes("missing-resource.txt"))
+                .isInstanceOf(FileException.class);
+    }
+
+    @Test
+    public void lines() {
+        try (Stream<String> lines = ResourceUtils.lines("test-resource.txt")) {
+            assertThat(lines.collect(Collectors.toList())).containsExactly("Hello Resource");
+        }
+    }
+
+    @Test
+    public void openReader() throws IOException {
+        try (BufferedReader reader = ResourceUtils.openReader("test-resource.txt")) {
+            assertThat(reader.readLine()).isEqualTo("Hello Resource");
+        }
+    }
+
+    @Test
+    public void transferTo() {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        assertThat(ResourceUtils.transferTo("/test-resource.txt", output)).isEqualTo(14L);
+        assertThat(new String(output.toByteArray(), StandardCharsets.UTF_8)).isEqualTo("Hello Resource");
+    }
+
+    @Test
+    public void loadAll() {
+        ResourceLoadResult result = ResourceUtils.loadAll("templates/*.txt");
+        assertThat(result.hasFailures()).isFalse();
+        assertThat(result.getContents()).containsOnlyKeys("templates/hello.txt");
+        assertThat(result.getContents().get("templates/hello.txt")).isEqualTo("Hello Template");
+    }
+
+    @Test
+    public void loadAllSkipsDirectories() {
+        ResourceLoadResult result = ResourceUtils.loadAll("templates");
+        assertThat(result.hasFailures()).isFalse();
+        assertThat(result.getContents()).isEmpty();
+    }
+
+    @Test
+    public void listResourcesContainsOnlyClasspathPaths() {
+        assertThat(ResourceUtils.listResources("").stream()
+                .anyMatch(path -> path.endsWith("]") || path.startsWith("/"))).isFalse();
+    }
+
+    @Test
+    public void loadAllWithExecutor() {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            ResourceLoadResult result = ResourceUtils.loadAll("/*-resource.txt", StandardCharsets.UTF_8, executor);
+            assertThat(result.getContents()).containsEntry("test-resource.txt", "Hello Resource")
+                    .containsEntry("second-resource.txt", "Second Resource")
+                    .containsEntry("empty-resource.txt", "");
+        } finally {
+            executor.shutdown();
+        }
+    }
 }
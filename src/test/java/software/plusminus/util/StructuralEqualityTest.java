@@ -0,0 +1,171 @@
+package software.plusminus.util;
+
+import org.junit.Test;
+import software.plusminus.util.helpers.Metrics;
+import software.plusminus.util.helpers.Node;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StructuralEqualityTest {
+
+    @Test
+    public void equalGraphs() {
+        assertThat(ObjectUtils.deepEquals(tree("a"), tree("a"))).isTrue();
+        assertThat(ObjectUtils.deepHashCode(tree("a"))).isEqualTo(ObjectUtils.deepHashCode(tree("a")));
+    }
+
+    @Test
+    public void differentGraphs() {
+        assertThat(ObjectUtils.deepEquals(tree("a"), tree("b"))).isFalse();
+    }
+
+    @Test
+    public void cyclicGraphs() {
+        Node first = new Node("node");
+        first.setLeft(first);
+        Node second = new Node("node");
+        Node secondChild = new Node("node");
+        second.setLeft(secondChild);
+        secondChild.setLeft(second);
+
+        assertThat(ObjectUtils.deepEquals(first, second)).isTrue();
+        assertThat(ObjectUtils.deepHashCode(first)).isEqualTo(ObjectUtils.deepHashCode(second));
+    }
+
+    @Test
+    public void overriddenEqualsIsUsed() {
+        Metrics first = new Metrics(1, 2L, 3.0, true, 4L);
+        Metrics second = new Metrics(1, 2L, 3.0, true, 4L);
+        assertThat(ObjectUtils.deepEquals(first, second)).isTrue();
+        assertThat(ObjectUtils.deepHashCode(first)).isEqualTo(first.hashCode());
+    }
+
+    @Test
+    public void collectionsAndMapsAreComparedByElements() {
+        Map<String, Object> first = new HashMap<>();
+        first.put("list", Arrays.asList(tree("a"), null));
+        first.put("set", new HashSet<>(Arrays.asList(tree("a"), tree("b"))));
+        first.put("array", new Node[]{tree("c")});
+        first.put("numbers", new int[]{1, 2});
+        first.put(null, Collections.singletonMap(tree("key"), tree("value")));
+        Map<String, Object> second = new HashMap<>();
+        second.put("list", Arrays.asList(tree("a"), null));
+        second.put("set", new HashSet<>(Arrays.asList(tree("b"), tree("a"))));
+        second.put("array", new Node[]{tree("c")});
+        second.put("numbers", new int[]{1, 2});
+        second.put(null, Collections.singletonMap(tree("key"), tree("value")));
+
+        assertThat(ObjectUtils.deepEquals(first, second)).isTrue();
+        assertThat(ObjectUtils.deepHashCode(first)).isEqualTo(ObjectUtils.deepHashCode(second));
+
+        second.put("numbers", new int[]{1, 3});
+        assertThat(ObjectUtils.deepEquals(first, second)).isFalse();
+    }
+
+    @Test
+    public void differentClassesAreNotEqual() {
+        assertThat(ObjectUtils.deepEquals(tree("a"), "a")).isFalse();
+        assertThat(ObjectUtils.deepEquals(null, tree("a"))).isFalse();
+        assertThat(ObjectUtils.deepEquals(null, null)).isTrue();
+    }
+
+    @Test
+    public void excludedFieldsAreIgnored() {
+        StructuralEquality equality = StructuralEquality.excluding(Ignored.class);
+        Versioned first = new Versioned("name", 1);
+        Versioned second = new Versioned("name", 2);
+
+        assertThat(equality.equals(first, second)).isTrue();
+        assertThat(equality.hashCode(first)).isEqualTo(equality.hashCode(second));
+        assertThat(ObjectUtils.deepEquals(first, second)).isFalse();
+    }
+
+    @Test
+    public void cyclesThroughSets() {
+        Parent first = parent("parent", "a", "b");
+        Parent second = parent("parent", "b", "a");
+
+        assertThat(ObjectUtils.deepEquals(first, second)).isTrue();
+        assertThat(ObjectUtils.deepHashCode(first)).isEqualTo(ObjectUtils.deepHashCode(second));
+        assertThat(ObjectUtils.deepEquals(first, parent("parent", "a", "c"))).isFalse();
+    }
+
+    @Test
+    public void cyclesThroughMaps() {
+        Parent first = parent("parent", "a", "b");
+        first.children.clear();
+        Parent second = parent("parent", "b", "a");
+        second.children.clear();
+
+        assertThat(ObjectUtils.deepEquals(first, second)).isTrue();
+        assertThat(ObjectUtils.deepHashCode(first)).isEqualTo(ObjectUtils.deepHashCode(second));
+
+        Parent different = parent("parent", "a", "c");
+        different.children.clear();
+        assertThat(ObjectUtils.deepEquals(first, different)).isFalse();
+    }
+
+    private Parent parent(String name, String... childNames) {
+        Parent parent = new Parent(name);
+        for (String childName : childNames) {
+            Child child = new Child(childName, parent);
+            parent.children.add(child);
+            parent.childrenByName.put(childName, child);
+        }
+        return parent;
+    }
+
+    private Node tree(String name) {
+        Node root = new Node(name);
+        root.setLeft(new Node(name + ".left"));
+        root.setRight(new Node(name + ".right"));
+        return root;
+    }
+
+    @Retention(RetentionPolicy.RUNTIME)
+    private @interface Ignored {
+    }
+
+    private static final class Parent {
+
+        private final String name;
+        private final Set<Child> children = new HashSet<>();
+        private final Map<String, Child> childrenByName = new HashMap<>();
+
+        private Parent(String name) {
+            this.name = name;
+        }
+    }
+
+    private static final class Child {
+
+        private final String name;
+        private final Parent parent;
+
+        private Child(String name, Parent parent) {
+            this.name = name;
+            this.parent = parent;
+        }
+    }
+
+    private static final class Versioned {
+
+        private final String name;
+        @Ignored
+        private final int version;
+
+        private Versioned(String name, int version) {
+            this.name = name;
+            this.version = version;
+        }
+    }
+}
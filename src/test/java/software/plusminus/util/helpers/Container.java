@@ -0,0 +1,45 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.plusminus.util.helpers;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Holder of collections, maps and arrays used by deep copy tests.
+ */
+@Getter
+@Setter
+public class Container {
+
+    private final List<Node> nodes = new ArrayList<>();
+    private final Set<Metrics> metrics = new HashSet<>();
+    private Map<String, Node> nodesByName = new HashMap<>();
+    private Node[] nodeArray;
+    private int[] numbers;
+    private String name;
+    private LocalDate date;
+    private long version;
+
+}